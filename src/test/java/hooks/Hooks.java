@@ -1,13 +1,29 @@
 package hooks;
 
 import io.cucumber.java.*;
-import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import utils.CommandWatchdog;
+import utils.DataDrivenResults;
 import utils.DriverManager;
+import utils.GridRouter;
+import utils.ProcessLifecycleTracker;
+import utils.RecordReplayProxy;
+import utils.ScenarioLogAppender;
+import utils.ScreencastRecorder;
+import utils.ScreenshotCapture;
+import utils.SharedHtmlUnitCache;
+import utils.VisualRegression;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -20,14 +36,53 @@ import java.util.List;
  * Handles WebDriver initialization and screenshot capture.
  */
 public class Hooks {
+    private static final Logger logger = LoggerFactory.getLogger(Hooks.class);
     
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String SCENARIO_LOG_DIR = "target/scenario-logs/";
+    private static final String SCREENCAST_DIR = "target/screencasts/";
+    
+    // Both are switched off in load mode, where only step timings matter
+    private static final boolean SCREENSHOTS_ENABLED = 
+            Boolean.parseBoolean(DriverManager.getConfig("screenshots.enabled", "true"));
+    private static final boolean SCENARIO_LOG_ENABLED = 
+            Boolean.parseBoolean(DriverManager.getConfig("scenario.log.enabled", "true"));
+    
+    private String scenarioId;
+    private ScreencastRecorder screencast;
+    private ScreenshotCapture screenshots;
+    private VisualRegression visual;
+    private int stepIndex;
     
     @Before
     public void setUp(Scenario scenario) {
-        System.out.println("Starting scenario: " + scenario.getName());
+        // Tag every log line of this scenario so it can be collected into a per-scenario log
+        scenarioId = scenario.getName().replaceAll("\\W+", "_") + "_"
+                     + scenario.getId().substring(0, Math.min(8, scenario.getId().length()));
+        MDC.put(ScenarioLogAppender.SCENARIO_ID_KEY, scenarioId);
+        MDC.put("browser", DriverManager.getBrowserType());
+        if (SCENARIO_LOG_ENABLED) {
+            ScenarioLogAppender.beginScenario(scenarioId);
+        }
+        
+        logger.info("Starting scenario: {}", scenario.getName());
         // Initialize the WebDriver
         DriverManager.initializeDriver();
+        // Baselines are keyed by feature file, scenario name and line, which stay the same across runs
+        if (VisualRegression.isEnabled()) {
+            String uri = scenario.getUri().toString();
+            String scenarioKey = uri.substring(uri.lastIndexOf('/') + 1).replace(".feature", "") + "_"
+                                 + scenario.getName().replaceAll("\\W+", "_") + "_L" + scenario.getLine();
+            visual = new VisualRegression(scenarioKey, scenario.getSourceTagNames());
+        }
+        screenshots = new ScreenshotCapture(scenario.getSourceTagNames(), visual);
+        stepIndex = 0;
+        
+        // Record the scenario as a video instead of per-step screenshots when enabled
+        if (ScreencastRecorder.isEnabled()) {
+            screencast = ScreencastRecorder.start(DriverManager.getRawDriver(), 
+                                                  Paths.get(SCREENCAST_DIR, scenarioId + ".avi"));
+        }
         
         // Add test start information
         scenario.attach(
@@ -43,37 +98,100 @@ public class Hooks {
     
     @BeforeStep
     public void beforeStep(Scenario scenario) {
-        System.out.println("Executing step in scenario: " + scenario.getName());
+        logger.info("Executing step in scenario: {}", scenario.getName());
+        stepIndex++;
         // Take screenshot before each step
-        takeScreenshot(scenario, "Before_Step");
+        if (SCREENSHOTS_ENABLED && screencast == null) {
+            takeScreenshot(scenario, "Before_Step");
+        }
     }
     
     @AfterStep
     public void afterStep(Scenario scenario) {
-        System.out.println("Completed step with status: " + scenario.getStatus());
+        logger.info("Completed step with status: {}", scenario.getStatus());
         // Take screenshot after each step
-        takeScreenshot(scenario, "After_Step");
+        if (SCREENSHOTS_ENABLED && screencast == null) {
+            takeScreenshot(scenario, "After_Step");
+        }
+        // Attach this step's screenshots here so the report shows them with the step
+        if (screenshots != null) {
+            screenshots.attachAll(scenario::attach);
+        }
     }
 
     @After
     public void tearDown(Scenario scenario) {
-        System.out.println("Scenario " + scenario.getName() + " ended with status: " + scenario.getStatus());
+        logger.info("Scenario {} ended with status: {}", scenario.getName(), scenario.getStatus());
+        
+        // Attach anything a step could not attach itself, e.g. when its AfterStep hook was not reached
+        if (screenshots != null) {
+            screenshots.attachAll(scenario::attach);
+            screenshots.logSummary();
+            screenshots = null;
+        }
+        String visualFailure = visual != null ? reportVisualDifferences(scenario) : null;
+        visual = null;
         
         // Take final screenshot
-        takeFinalScreenshot(scenario);
+        if (SCREENSHOTS_ENABLED) {
+            takeFinalScreenshot(scenario);
+        }
+        
+        if (screencast != null) {
+            byte[] video = screencast.stop();
+            if (video != null) {
+                scenario.attach(video, "video/x-msvideo", "screencast");
+            }
+            screencast = null;
+        }
         
-        // Quit the driver
-        DriverManager.quitDriver();
+        // Quit the driver (or keep it warm when drivers are being reused)
+        DriverManager.releaseDriver();
+        
+        if (SCENARIO_LOG_ENABLED) {
+            attachScenarioLog(scenario);
+        }
+        MDC.clear();
+        
+        // Fail only after the driver has been released
+        if (visualFailure != null) {
+            throw new AssertionError(visualFailure);
+        }
     }
 
     @AfterAll
     public static void afterAll() {
-        // Ensure all drivers are closed
-        DriverManager.quitDriver();
-        System.out.println("Test execution completed - all drivers have been closed");
+        // Ensure all drivers are closed, unless they are kept warm for reruns
+        if (!DriverManager.isReuseDrivers()) {
+            DriverManager.quitDriver();
+        }
+        logger.info("Test execution completed - all drivers have been closed");
+        
+        if (Boolean.parseBoolean(DriverManager.getConfig("htmlunit.cache.shared", "false"))) {
+            logger.info("Shared HtmlUnit cache: {}", SharedHtmlUnitCache.getInstance().getStats());
+        }
+        logger.info("Browser startup times:\n{}", DriverManager.getStartupStats());
+        logger.info("Browser sessions: {}", ProcessLifecycleTracker.getInstance().getStats());
+        // Every scenario quits its own driver, so anything this runtime's threads still have open has leaked
+        if (!DriverManager.isReuseDrivers()) {
+            ProcessLifecycleTracker.getInstance().describeOpenSessions()
+                    .forEach(session -> logger.warn("Leaked browser session: {}", session));
+        }
+        if (CommandWatchdog.isEnabled()) {
+            logger.info("Watchdog stalls: {}", CommandWatchdog.getStallStats());
+        }
+        if (GridRouter.isEnabled()) {
+            logger.info("Remote endpoints: {}", GridRouter.getInstance().getStats());
+        }
+        if (RecordReplayProxy.getInstance() != null) {
+            logger.info("Record/replay proxy: {}", RecordReplayProxy.getInstance().getStats());
+        }
+        if (DataDrivenResults.hasResults()) {
+            DataDrivenResults.writeReports();
+        }
         
         // Find and log the path to the reports
-        System.out.println("\n==== REPORTS LOCATION ====");
+        logger.info("\n==== REPORTS LOCATION ====");
         try {
             // Find the latest extent-reports directory
             File targetDir = new File("target");
@@ -84,37 +202,76 @@ public class Hooks {
                     Arrays.sort(extentDirs, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
                     File latestDir = extentDirs[0];
                     
-                    System.out.println("Report Directory: " + latestDir.getAbsolutePath());
+                    logger.info("Report Directory: {}", latestDir.getAbsolutePath());
                     
                     // Look for the PDF report
                     File pdfReport = new File(latestDir, "ExtentPdf.pdf");
                     if (pdfReport.exists()) {
-                        System.out.println("PDF Report: " + pdfReport.getAbsolutePath() + " (Size: " + pdfReport.length() + " bytes)");
+                        logger.info("PDF Report: {} (Size: {} bytes)", pdfReport.getAbsolutePath(), pdfReport.length());
                     } else {
-                        System.out.println("PDF Report not found in the expected location");
+                        logger.info("PDF Report not found in the expected location");
                         // Try to find any PDF file
                         findFilesByExtension(latestDir, ".pdf").forEach(file -> 
-                            System.out.println("Found PDF: " + file.getAbsolutePath()));
+                            logger.info("Found PDF: {}", file.getAbsolutePath()));
                     }
                     
                     // Look for HTML report
                     File htmlReport = new File(latestDir, "target/extent-reports/spark-report.html");
                     if (htmlReport.exists()) {
-                        System.out.println("HTML Report: " + htmlReport.getAbsolutePath());
+                        logger.info("HTML Report: {}", htmlReport.getAbsolutePath());
                     } else {
-                        System.out.println("HTML Report not found in the expected location");
+                        logger.info("HTML Report not found in the expected location");
                         // Try to find any HTML file
                         findFilesByExtension(latestDir, ".html").forEach(file -> 
-                            System.out.println("Found HTML: " + file.getAbsolutePath()));
+                            logger.info("Found HTML: {}", file.getAbsolutePath()));
                     }
                 } else {
-                    System.out.println("No extent-reports directory found");
+                    logger.info("No extent-reports directory found");
                 }
             }
         } catch (Exception e) {
-            System.err.println("Error finding reports: " + e.getMessage());
+            logger.error("Error finding reports: {}", e.getMessage());
+        }
+        logger.info("=========================\n");
+    }
+    
+    /**
+     * Attaches the visual differences found in this scenario
+     *
+     * @return the failure message if differences should fail the scenario, otherwise null
+     */
+    private String reportVisualDifferences(Scenario scenario) {
+        logger.info("Visual regression: {}", visual.getSummary());
+        List<String> differences = visual.getDifferences();
+        if (differences.isEmpty()) {
+            return null;
+        }
+        StringBuilder html = new StringBuilder("<div style='background:#fdecea; padding:15px; border-radius:5px; border:1px solid #f5c6cb;'>")
+            .append("<h3 style='color:#a94442;'>Visual Differences</h3><ul>");
+        differences.forEach(difference -> html.append("<li>").append(difference).append("</li>"));
+        html.append("</ul><p><small>Actual and diff images: target/visual-diffs</small></p></div>");
+        scenario.attach(html.toString().getBytes(), "text/html", "visual_differences");
+        return VisualRegression.isFailOnDiff()
+            ? differences.size() + " visual difference(s): " + String.join("; ", differences)
+            : null;
+    }
+    
+    /**
+     * Attaches the log lines collected for this scenario and writes them to a per-scenario file
+     */
+    private void attachScenarioLog(Scenario scenario) {
+        byte[] scenarioLog = ScenarioLogAppender.endScenario(scenarioId);
+        if (scenarioLog.length == 0) {
+            return;
+        }
+        scenario.attach(scenarioLog, "text/plain", "scenario_log");
+        try {
+            Path logFile = Paths.get(SCENARIO_LOG_DIR, scenarioId + ".log");
+            Files.createDirectories(logFile.getParent());
+            Files.write(logFile, scenarioLog);
+        } catch (IOException e) {
+            logger.error("Error writing scenario log: {}", e.getMessage());
         }
-        System.out.println("=========================\n");
     }
     
     /**
@@ -153,20 +310,20 @@ public class Hooks {
                 if (driver instanceof TakesScreenshot && DriverManager.canTakeScreenshots()) {
                     // Try to take actual screenshot for browsers that support it
                     try {
-                        byte[] screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-                        scenario.attach(screenshot, "image/png", screenshotName);
-                        System.out.println("Screenshot captured: " + screenshotName);
-                        
                         // For enhanced reporting, include an HTML caption below the screenshot
                         String caption = "<div style='background:#f8f9fa; padding:10px; border-radius:3px; margin-top:5px;'>" +
                             "<p><strong>URL:</strong> " + currentUrl + "</p>" +
                             "<p><strong>Title:</strong> " + pageTitle + "</p>" +
                             "<p><small>Time: " + getCurrentTime() + "</small></p>" +
                             "</div>";
-                        scenario.attach(caption.getBytes(), "text/html", screenshotName + "_details");
+                        // In element mode a step without the elements on the page is only captured when it failed
+                        String visualKey = String.format("%02d_%s", stepIndex, prefix);
+                        if (screenshots.capture(driver, screenshotName, visualKey, caption, scenario.isFailed())) {
+                            logger.info("Screenshot captured: {}", screenshotName);
+                        }
                         
                     } catch (Exception e) {
-                        System.err.println("Failed to capture screenshot: " + e.getMessage());
+                        logger.error("Failed to capture screenshot: {}", e.getMessage());
                         createHtmlScreenshotAlternative(scenario, currentUrl, pageTitle, screenshotName, prefix);
                     }
                 } else {
@@ -176,7 +333,7 @@ public class Hooks {
                 }
                 
             } catch (Exception e) {
-                System.err.println("Error capturing screenshot: " + e.getMessage());
+                logger.error("Error capturing screenshot: {}", e.getMessage());
             }
         }
     }
@@ -223,7 +380,7 @@ public class Hooks {
                 scenario.attach(finalSummary.getBytes(), "text/html", "final_summary");
                 
             } catch (Exception e) {
-                System.err.println("Error capturing final screenshot: " + e.getMessage());
+                logger.error("Error capturing final screenshot: {}", e.getMessage());
             }
         }
     }
@@ -240,7 +397,8 @@ public class Hooks {
             "<p><strong>Time:</strong> " + getCurrentTime() + "</p>" +
             "</div>";
         
-        scenario.attach(html.getBytes(), "text/html", screenshotName);
+        // Queued with the screenshots so the step's attachments keep their order
+        screenshots.add(html.getBytes(), "text/html", screenshotName);
     }
     
     /**
@@ -0,0 +1,294 @@
+package runners;
+
+import ch.qos.logback.classic.Level;
+import io.cucumber.core.eventbus.EventBus;
+import io.cucumber.core.feature.FeatureParser;
+import io.cucumber.core.filter.Filters;
+import io.cucumber.core.gherkin.Feature;
+import io.cucumber.core.gherkin.Pickle;
+import io.cucumber.core.options.CommandlineOptionsParser;
+import io.cucumber.core.options.CucumberProperties;
+import io.cucumber.core.options.CucumberPropertiesParser;
+import io.cucumber.core.options.RuntimeOptions;
+import io.cucumber.core.plugin.PluginFactory;
+import io.cucumber.core.plugin.Plugins;
+import io.cucumber.core.runtime.BackendServiceLoader;
+import io.cucumber.core.runtime.CucumberExecutionContext;
+import io.cucumber.core.runtime.ExitStatus;
+import io.cucumber.core.runtime.FeaturePathFeatureSupplier;
+import io.cucumber.core.runtime.ObjectFactoryServiceLoader;
+import io.cucumber.core.runtime.ObjectFactorySupplier;
+import io.cucumber.core.runtime.SingletonObjectFactorySupplier;
+import io.cucumber.core.runtime.SingletonRunnerSupplier;
+import io.cucumber.core.runtime.TimeServiceEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.DriverManager;
+import utils.LoadMetricsPlugin;
+import utils.StandInServer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Load mode for the {@link TestRunner} glue: replays one scenario as N concurrent
+ * virtual users, each with its own HtmlUnit session.
+ *
+ * Users are started evenly over load.rampUp.s, all of them then keep running the
+ * scenario back to back for load.steadyState.s, and when load.duration.s is longer
+ * than ramp-up plus steady state the remaining time is used to stop them one by one.
+ * Each user is one Cucumber runtime that repeats the scenario: features are parsed,
+ * glue is loaded and the BeforeAll/AfterAll hooks run once per user, outside the
+ * measured iterations.
+ * Per-step screenshots, scenario logs and report plugins are switched off; step
+ * latencies and throughput are collected by {@link LoadMetricsPlugin}, logged every
+ * load.report.interval.s and written to load.report.dir at the end.
+ *
+ * The target is whatever base.url points at. With load.standin=true a local
+ * {@link StandInServer} is started and used as the target instead.
+ *
+ * Usage: LoadTestRunner [feature-path]   (defaults to load.feature)
+ */
+public class LoadTestRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    public static void main(String[] args) {
+        // Must be in place before DriverManager reads its configuration
+        System.setProperty("browser", "htmlunit");
+        System.setProperty("screenshots.enabled", "false");
+        System.setProperty("scenario.log.enabled", "false");
+        quietLogging();
+
+        int users = Integer.parseInt(DriverManager.getConfig("load.users", "5"));
+        long rampUpMs = TimeUnit.SECONDS.toMillis(Long.parseLong(DriverManager.getConfig("load.rampUp.s", "10")));
+        long steadyStateMs = TimeUnit.SECONDS.toMillis(Long.parseLong(DriverManager.getConfig("load.steadyState.s", "60")));
+        long durationMs = Math.max(rampUpMs + steadyStateMs, TimeUnit.SECONDS.toMillis(
+                Long.parseLong(DriverManager.getConfig("load.duration.s", "0"))));
+        long thinkTimeMs = Long.parseLong(DriverManager.getConfig("load.thinkTime.ms", "0"));
+        long intervalMs = TimeUnit.SECONDS.toMillis(Long.parseLong(DriverManager.getConfig("load.report.interval.s", "10")));
+        String feature = args.length > 0 ? args[0]
+                : DriverManager.getConfig("load.feature", "classpath:features/WebsiteNavigation.feature");
+        String tags = DriverManager.getConfig("load.tags", "@test");
+
+        StandInServer standIn = null;
+        try {
+            if (Boolean.parseBoolean(DriverManager.getConfig("load.standin", "false"))) {
+                standIn = StandInServer.start(Integer.parseInt(DriverManager.getConfig("standin.port", "0")));
+                System.setProperty("base.url", standIn.getBaseUrl());
+            }
+            logger.info("Load run: {} user(s) against {}, ramp-up {} s, steady state {} s, duration {} s",
+                        users, DriverManager.getConfig("base.url", "https://the-internet.herokuapp.com/"),
+                        rampUpMs / 1000, steadyStateMs / 1000, durationMs / 1000);
+            logger.info("Scenario: {} {}", feature, tags);
+
+            List<String> cucumberArgs = new ArrayList<>(List.of(
+                    "--plugin", LoadMetricsPlugin.class.getName(), "--no-summary", "--monochrome"));
+            if (!tags.isEmpty()) {
+                cucumberArgs.add("--tags");
+                cucumberArgs.add(tags);
+            }
+            cucumberArgs.add(feature);
+
+            run(cucumberArgs.toArray(new String[0]), users, rampUpMs, steadyStateMs, durationMs, thinkTimeMs, intervalMs);
+
+            String summary = LoadMetricsPlugin.writeReport(
+                    Paths.get(DriverManager.getConfig("load.report.dir", "target/load-reports")),
+                    rampUpMs, rampUpMs + steadyStateMs);
+            logger.info("\n==== LOAD RUN SUMMARY ====\n{}", summary);
+            if (standIn != null) {
+                logger.info("Stand-in server handled {} request(s)", standIn.getRequestCount());
+            }
+            logger.info("Reports written to: {}",
+                        Paths.get(DriverManager.getConfig("load.report.dir", "target/load-reports")).toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Error running load test: {}", e.getMessage(), e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Load run interrupted");
+            System.exit(1);
+        } finally {
+            if (standIn != null) {
+                standIn.stop();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(String[] cucumberArgs, int users, long rampUpMs, long steadyStateMs, long durationMs,
+                            long thinkTimeMs, long intervalMs) throws InterruptedException {
+        AtomicInteger activeUsers = new AtomicInteger();
+        AtomicLong iterations = new AtomicLong();
+        ClassLoader classLoader = LoadTestRunner.class.getClassLoader();
+        long rampDownMs = durationMs - rampUpMs - steadyStateMs;
+
+        // Every virtual user keeps its HtmlUnit session between iterations; cookies are cleared in between
+        DriverManager.setReuseDrivers(true);
+        LoadMetricsPlugin.reset(intervalMs);
+        long runStart = System.currentTimeMillis();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicLong reportedInterval = new AtomicLong();
+        reporter.scheduleAtFixedRate(() -> logger.info("{} user(s) active\n{}", activeUsers.get(),
+                LoadMetricsPlugin.formatInterval(reportedInterval.getAndIncrement())),
+                intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        AtomicInteger userNumber = new AtomicInteger();
+        // One thread group per user, so each runtime only sees its own sessions
+        ExecutorService pool = Executors.newFixedThreadPool(users, runnable -> {
+            String name = "virtual-user-" + userNumber.incrementAndGet();
+            return new Thread(new ThreadGroup(name), runnable, name);
+        });
+        for (int i = 0; i < users; i++) {
+            // Start users evenly over the ramp-up; the last one started is the first one stopped
+            long startAt = runStart + rampUpMs * i / users;
+            long stopAt = runStart + rampUpMs + steadyStateMs + rampDownMs * (users - i) / users;
+            pool.execute(() -> {
+                ScenarioLoop user = null;
+                boolean active = false;
+                try {
+                    user = new ScenarioLoop(cucumberArgs, classLoader);
+                    user.start();
+                    sleepUntil(startAt);
+                    activeUsers.incrementAndGet();
+                    active = true;
+                    while (System.currentTimeMillis() < stopAt) {
+                        user.runOnce();
+                        iterations.incrementAndGet();
+                        if (thinkTimeMs > 0) {
+                            Thread.sleep(thinkTimeMs);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    logger.error("Virtual user stopped after an error: {}", e.getMessage(), e);
+                } finally {
+                    if (active) {
+                        activeUsers.decrementAndGet();
+                    }
+                    DriverManager.quitDriver();
+                    if (user != null) {
+                        user.finish();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        // Iterations in flight at the end of the run are allowed to finish
+        pool.awaitTermination(durationMs + TimeUnit.MINUTES.toMillis(5), TimeUnit.MILLISECONDS);
+        reporter.shutdownNow();
+        DriverManager.setReuseDrivers(false);
+
+        logger.info("Load run finished: {} iteration(s) in {} s", iterations.get(),
+                    (System.currentTimeMillis() - runStart) / 1000);
+    }
+
+    /**
+     * A Cucumber runtime for one virtual user that can run its scenarios any number of times.
+     *
+     * Built the way Cucumber's own Runtime is, but the test run stays open between
+     * iterations instead of ending after the first pass over the pickles.
+     */
+    private static class ScenarioLoop {
+        private final CucumberExecutionContext context;
+        private final List<Feature> features;
+        private final List<Pickle> pickles;
+
+        ScenarioLoop(String[] cucumberArgs, ClassLoader classLoader) {
+            // Same precedence as the Cucumber CLI: properties file, environment, system properties, arguments
+            RuntimeOptions fromFile = new CucumberPropertiesParser()
+                    .parse(CucumberProperties.fromPropertiesFile()).build();
+            RuntimeOptions fromEnvironment = new CucumberPropertiesParser()
+                    .parse(CucumberProperties.fromEnvironment()).build(fromFile);
+            RuntimeOptions fromSystem = new CucumberPropertiesParser()
+                    .parse(CucumberProperties.fromSystemProperties()).build(fromEnvironment);
+            RuntimeOptions options = new CommandlineOptionsParser(System.out).parse(cucumberArgs)
+                    .addDefaultGlueIfAbsent()
+                    .addDefaultFeaturePathIfAbsent()
+                    .build(fromSystem);
+
+            Supplier<ClassLoader> classLoaderSupplier = () -> classLoader;
+            EventBus bus = new TimeServiceEventBus(Clock.systemUTC(), UUID::randomUUID);
+            ObjectFactorySupplier objectFactory = new SingletonObjectFactorySupplier(
+                    new ObjectFactoryServiceLoader(classLoaderSupplier, options));
+            ExitStatus exitStatus = new ExitStatus(options);
+            Plugins plugins = new Plugins(new PluginFactory(), options);
+            plugins.addPlugin(exitStatus);
+            plugins.setEventBusOnEventListenerPlugins(bus);
+
+            this.context = new CucumberExecutionContext(bus, exitStatus, new SingletonRunnerSupplier(
+                    options, bus, new BackendServiceLoader(classLoaderSupplier, objectFactory), objectFactory));
+            this.features = new FeaturePathFeatureSupplier(classLoaderSupplier, options,
+                                                           new FeatureParser(bus::generateId)).get();
+            Filters filters = new Filters(options);
+            this.pickles = features.stream()
+                    .flatMap(feature -> feature.getPickles().stream())
+                    .filter(filters)
+                    .collect(Collectors.toList());
+            if (pickles.isEmpty()) {
+                throw new IllegalArgumentException("No scenarios match " + String.join(" ", cucumberArgs));
+            }
+        }
+
+        void start() {
+            context.startTestRun();
+            features.forEach(context::beforeFeature);
+            context.runBeforeAllHooks();
+        }
+
+        /**
+         * Runs every selected scenario once
+         */
+        void runOnce() {
+            for (Pickle pickle : pickles) {
+                context.runTestCase(runner -> runner.runPickle(pickle));
+            }
+        }
+
+        void finish() {
+            try {
+                context.runAfterAllHooks();
+            } catch (RuntimeException e) {
+                logger.error("AfterAll hooks failed: {}", e.getMessage());
+            } finally {
+                context.finishTestRun();
+            }
+        }
+    }
+
+    private static void sleepUntil(long timeMillis) throws InterruptedException {
+        long delay = timeMillis - System.currentTimeMillis();
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Keeps the console readable with many users: only warnings from the glue and
+     * HtmlUnit, progress and results from the load runner itself.
+     */
+    private static void quietLogging() {
+        Level level = Level.toLevel(DriverManager.getConfig("load.log.level", "WARN"));
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(level);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.gargoylesoftware")).setLevel(Level.ERROR);
+        ((ch.qos.logback.classic.Logger) logger).setLevel(Level.INFO);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(StandInServer.class)).setLevel(Level.INFO);
+    }
+}
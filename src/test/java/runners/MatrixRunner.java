@@ -0,0 +1,293 @@
+package runners;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.MediaEntityBuilder;
+import com.aventstack.extentreports.Status;
+import io.cucumber.core.cli.Main;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.DriverManager;
+import utils.ExtentReportManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Cross-browser matrix mode: runs every scenario once per browser in matrix.browsers,
+ * all browsers at the same time in one JVM.
+ *
+ * Each browser gets its own Cucumber runtime on its own thread, with
+ * matrix.threads.&lt;browser&gt; scenario threads, so slow browsers can be given more
+ * workers than fast ones. The browser is passed to DriverManager as a per-thread
+ * override that the runtime's scenario threads inherit. Driver configuration,
+ * profile templates and the Extent report are shared; every browser writes its own
+ * Cucumber JSON report, and the results are merged into one Extent report with the
+ * browser as the device of each test. Attachments (screenshots, logs, visual diffs,
+ * data tables) are carried over to the step or hook they were attached in; media other
+ * than images and text are written next to the report and linked.
+ *
+ * Usage: MatrixRunner [feature-path...]   (defaults to matrix.features)
+ */
+public class MatrixRunner {
+    private static final Logger logger = LoggerFactory.getLogger(MatrixRunner.class);
+
+    private static final String REPORT_DIR = "target/cucumber-reports/matrix/";
+    // Relative to the Extent report, which is written to target/extent-reports/
+    private static final String ATTACHMENT_DIR = "matrix-attachments/";
+    private static final AtomicInteger attachmentCount = new AtomicInteger();
+
+    public static void main(String[] args) {
+        List<String> browsers = Arrays.stream(DriverManager.getConfig("matrix.browsers", "chrome,firefox,htmlunit")
+                .split(",")).map(String::trim).filter(b -> !b.isEmpty()).collect(Collectors.toList());
+        List<String> features = args.length > 0 ? Arrays.asList(args)
+                : Arrays.asList(DriverManager.getConfig("matrix.features", "classpath:features").split(","));
+
+        long start = System.currentTimeMillis();
+        // Each browser's runtime gets its own thread group, which its scenario threads inherit
+        ExecutorService browserThreads = Executors.newFixedThreadPool(browsers.size(),
+                runnable -> new Thread(new ThreadGroup("matrix-runner"), runnable, "matrix-runner"));
+        Map<String, Future<Long>> results = new LinkedHashMap<>();
+        for (String browser : browsers) {
+            results.put(browser, browserThreads.submit(() -> runBrowser(browser, features)));
+        }
+        browserThreads.shutdown();
+
+        boolean passed = true;
+        long sequentialMs = 0;
+        for (Map.Entry<String, Future<Long>> result : results.entrySet()) {
+            try {
+                long browserMs = result.getValue().get();
+                sequentialMs += browserMs;
+                logger.info("{}: finished in {} s", result.getKey(), browserMs / 1000);
+            } catch (Exception e) {
+                logger.error("{}: run failed: {}", result.getKey(), e.getMessage(), e);
+                passed = false;
+            }
+        }
+        long totalMs = System.currentTimeMillis() - start;
+        logger.info("Matrix of {} browser(s) finished in {} s (browsers one after another: {} s)",
+                    browsers.size(), totalMs / 1000, sequentialMs / 1000);
+
+        try {
+            passed &= writeExtentReport(browsers);
+        } catch (IOException e) {
+            logger.error("Error writing matrix report: {}", e.getMessage(), e);
+            passed = false;
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the features on one browser
+     *
+     * @return wall-clock time of the browser's run in milliseconds
+     */
+    private static long runBrowser(String browser, List<String> features) {
+        Thread.currentThread().setName("matrix-" + browser);
+        DriverManager.setBrowserOverride(browser);
+        String threads = DriverManager.getConfig("matrix.threads." + browser,
+                DriverManager.getConfig("matrix.threads", "1"));
+
+        List<String> cucumberArgs = new ArrayList<>(Arrays.asList(
+                "--threads", threads,
+                "--plugin", "json:" + REPORT_DIR + browser + ".json",
+                "--no-summary", "--monochrome"));
+        cucumberArgs.addAll(features);
+
+        logger.info("{}: starting with {} thread(s)", browser, threads);
+        long start = System.currentTimeMillis();
+        try {
+            // A non-zero exit status only means failed scenarios, which end up in the report
+            Main.run(cucumberArgs.toArray(new String[0]), MatrixRunner.class.getClassLoader());
+        } finally {
+            DriverManager.quitDriver();
+            DriverManager.setBrowserOverride(null);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Merges the per-browser Cucumber JSON reports into the Extent report
+     *
+     * @return true if every scenario passed on every browser
+     */
+    private static boolean writeExtentReport(List<String> browsers) throws IOException {
+        ExtentReports extent = ExtentReportManager.getReportInstance();
+        extent.setSystemInfo("Browser", String.join(", ", browsers));
+        boolean allPassed = true;
+
+        for (String browser : browsers) {
+            Path json = Paths.get(REPORT_DIR + browser + ".json");
+            if (!Files.exists(json)) {
+                logger.error("{}: no Cucumber JSON report at {}", browser, json.toAbsolutePath());
+                allPassed = false;
+                continue;
+            }
+            List<Map<String, Object>> features = new Json().toType(
+                    new String(Files.readAllBytes(json), StandardCharsets.UTF_8), Json.LIST_OF_MAPS_TYPE);
+            int scenarios = 0;
+            int failed = 0;
+            for (Map<String, Object> feature : features) {
+                // The JSON report lists a feature's Background before every scenario that ran it
+                List<Map<String, Object>> background = Collections.emptyList();
+                for (Map<String, Object> element : listOf(feature.get("elements"))) {
+                    if ("background".equals(element.get("type"))) {
+                        background = listOf(element.get("steps"));
+                        continue;
+                    }
+                    if (!"scenario".equals(element.get("type"))) {
+                        continue;
+                    }
+                    scenarios++;
+                    if (!addScenario(extent, browser, String.valueOf(feature.get("name")), background, element)) {
+                        failed++;
+                    }
+                    background = Collections.emptyList();
+                }
+            }
+            allPassed &= failed == 0;
+            logger.info("{}: {} scenario(s), {} failed", browser, scenarios, failed);
+        }
+        extent.flush();
+        return allPassed;
+    }
+
+    private static boolean addScenario(ExtentReports extent, String browser, String featureName,
+                                       List<Map<String, Object>> background, Map<String, Object> scenario) {
+        ExtentTest test = extent.createTest(scenario.get("name") + " [" + browser + "]", featureName)
+                .assignDevice(browser);
+        for (Map<String, Object> tag : listOf(scenario.get("tags"))) {
+            test.assignCategory(String.valueOf(tag.get("name")));
+        }
+
+        boolean passed = true;
+        long durationNanos = 0;
+        List<Map<String, Object>> hooksAndSteps = new ArrayList<>(listOf(scenario.get("before")));
+        hooksAndSteps.addAll(background);
+        hooksAndSteps.addAll(listOf(scenario.get("steps")));
+        hooksAndSteps.addAll(listOf(scenario.get("after")));
+        for (Map<String, Object> step : hooksAndSteps) {
+            Map<String, Object> result = mapOf(step.get("result"));
+            String status = String.valueOf(result.getOrDefault("status", "unknown"));
+            Object duration = result.get("duration");
+            durationNanos += duration instanceof Number ? ((Number) duration).longValue() : 0;
+            passed &= "passed".equals(status);
+
+            // BeforeStep/AfterStep hooks are nested in the step; their attachments belong to it
+            List<Map<String, Object>> embeddings = new ArrayList<>();
+            listOf(step.get("before")).forEach(hook -> embeddings.addAll(listOf(hook.get("embeddings"))));
+            embeddings.addAll(listOf(step.get("embeddings")));
+            listOf(step.get("after")).forEach(hook -> embeddings.addAll(listOf(hook.get("embeddings"))));
+
+            // Hooks are only shown when they did not pass or attached something
+            if (!step.containsKey("keyword") && "passed".equals(status) && embeddings.isEmpty()) {
+                continue;
+            }
+            String name = step.containsKey("keyword")
+                    ? step.get("keyword") + String.valueOf(step.get("name"))
+                    : "Hook " + mapOf(step.get("match")).get("location");
+            ExtentTest node = test.createNode(name);
+            Object error = result.get("error_message");
+            switch (status) {
+                case "passed":
+                    node.log(Status.PASS, status);
+                    break;
+                case "failed":
+                    node.log(Status.FAIL, error != null ? "<pre>" + error + "</pre>" : status);
+                    break;
+                case "skipped":
+                    node.log(Status.SKIP, status);
+                    break;
+                default:
+                    node.log(Status.WARNING, status);
+            }
+            for (Map<String, Object> embedding : embeddings) {
+                addAttachment(node, browser, embedding);
+            }
+        }
+
+        Object startTimestamp = scenario.get("start_timestamp");
+        if (startTimestamp != null) {
+            Instant startedAt = Instant.parse(String.valueOf(startTimestamp));
+            test.getModel().setStartTime(Date.from(startedAt));
+            test.getModel().setEndTime(Date.from(startedAt.plusNanos(durationNanos)));
+        }
+        return passed;
+    }
+
+    /**
+     * Adds one Cucumber JSON embedding to a step node
+     */
+    private static void addAttachment(ExtentTest node, String browser, Map<String, Object> embedding) {
+        String mimeType = String.valueOf(embedding.getOrDefault("mime_type", "application/octet-stream"));
+        String name = String.valueOf(embedding.getOrDefault("name", mimeType));
+        String data = String.valueOf(embedding.getOrDefault("data", ""));
+        if (mimeType.startsWith("image/")) {
+            node.info(name, MediaEntityBuilder.createScreenCaptureFromBase64String(data, name).build());
+            return;
+        }
+        byte[] bytes = Base64.getDecoder().decode(data);
+        if ("text/html".equals(mimeType)) {
+            node.info(new String(bytes, StandardCharsets.UTF_8));
+        } else if (mimeType.startsWith("text/")) {
+            node.info("<b>" + escape(name) + "</b><pre>" + escape(new String(bytes, StandardCharsets.UTF_8)) + "</pre>");
+        } else {
+            // e.g. screencasts: too large to inline, so they are written next to the report
+            String file = ATTACHMENT_DIR + browser + "/" + attachmentCount.incrementAndGet() + "-"
+                          + name.replaceAll("\\W+", "_") + extensionFor(mimeType);
+            try {
+                Path target = Paths.get("target/extent-reports/", file);
+                Files.createDirectories(target.getParent());
+                Files.write(target, bytes);
+                node.info("<a href='" + file + "'>" + escape(name) + "</a> (" + mimeType + ", "
+                          + bytes.length / 1024 + " KB)");
+            } catch (IOException e) {
+                logger.error("Error writing attachment {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private static String extensionFor(String mimeType) {
+        switch (mimeType) {
+            case "video/x-msvideo":
+                return ".avi";
+            case "application/json":
+                return ".json";
+            default:
+                return ".bin";
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> listOf(Object value) {
+        return value instanceof List ? (List<Map<String, Object>>) value : Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mapOf(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+}
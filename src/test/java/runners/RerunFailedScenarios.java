@@ -0,0 +1,219 @@
+package runners;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.Status;
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.discovery.FilePosition;
+import org.junit.platform.engine.support.descriptor.ClasspathResourceSource;
+import org.junit.platform.engine.support.descriptor.FileSource;
+import org.junit.platform.launcher.EngineFilter;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.DriverManager;
+import utils.ExtentReportManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.cucumber.junit.platform.engine.Constants.GLUE_PROPERTY_NAME;
+import static io.cucumber.junit.platform.engine.Constants.PLUGIN_PROPERTY_NAME;
+
+/**
+ * Re-executes failed scenarios at the end of a {@link TestRunner} run, in the same JVM.
+ *
+ * Registered through META-INF/services, so it sees every scenario of the main run.
+ * When the run finishes, the failed scenarios are launched again (up to
+ * rerun.maxAttempts times). The main run has quit its drivers by then, so the first
+ * rerun scenario starts a new browser, which is kept alive for the remaining reruns.
+ * A scenario that passes on a later attempt is reported as flaky, one that never
+ * passes as failed, in a separate Extent report.
+ *
+ * Scenarios still failing afterwards are written to rerun.file, one location per line,
+ * so a later invocation can run only those:
+ *   mvn test -Dcucumber.features="$(paste -sd, target/rerun/failed-scenarios.txt)"
+ */
+public class RerunFailedScenarios implements TestExecutionListener {
+    private static final Logger logger = LoggerFactory.getLogger(RerunFailedScenarios.class);
+
+    private final Map<String, Failure> failures = new LinkedHashMap<>();
+
+    @Override
+    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult result) {
+        if (!testIdentifier.isTest() || result.getStatus() != TestExecutionResult.Status.FAILED) {
+            return;
+        }
+        testIdentifier.getSource().ifPresent(source -> {
+            String location = locationOf(source);
+            DiscoverySelector selector = selectorFor(source);
+            if (location != null && selector != null) {
+                failures.put(location, new Failure(testIdentifier.getDisplayName(), selector));
+            }
+        });
+    }
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        int maxAttempts = Integer.parseInt(DriverManager.getConfig("rerun.maxAttempts", "0"));
+        if (!failures.isEmpty() && maxAttempts > 0) {
+            rerun(maxAttempts);
+            writeReport();
+        }
+        writeRerunFile();
+    }
+
+    private void rerun(int maxAttempts) {
+        logger.info("\n==== RERUNNING {} FAILED SCENARIO(S) ====", failures.size());
+        // The nested launcher must not pick up this listener again
+        Launcher launcher = LauncherFactory.create(LauncherConfig.builder()
+                .enableTestExecutionListenerAutoRegistration(false)
+                .build());
+
+        DriverManager.setReuseDrivers(true);
+        try {
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                List<DiscoverySelector> selectors = new ArrayList<>();
+                for (Failure failure : failures.values()) {
+                    if (!failure.passed) {
+                        selectors.add(failure.selector);
+                    }
+                }
+                if (selectors.isEmpty()) {
+                    break;
+                }
+                logger.info("Rerun attempt {} of {} for {} scenario(s)", attempt, maxAttempts, selectors.size());
+
+                LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                        .selectors(selectors)
+                        .filters(EngineFilter.includeEngines("cucumber"))
+                        .configurationParameter(GLUE_PROPERTY_NAME, "stepdefinitions,hooks")
+                        .configurationParameter(PLUGIN_PROPERTY_NAME, "pretty")
+                        .configurationParameter("cucumber.publish.quiet", "true")
+                        .build();
+
+                int currentAttempt = attempt;
+                launcher.execute(request, new TestExecutionListener() {
+                    @Override
+                    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult result) {
+                        if (!testIdentifier.isTest()) {
+                            return;
+                        }
+                        testIdentifier.getSource().map(RerunFailedScenarios::locationOf).ifPresent(location -> {
+                            Failure failure = failures.get(location);
+                            if (failure != null) {
+                                failure.attempts = currentAttempt;
+                                failure.passed = result.getStatus() == TestExecutionResult.Status.SUCCESSFUL;
+                                result.getThrowable().ifPresent(t -> failure.lastError = t.toString());
+                            }
+                        });
+                    }
+                });
+            }
+        } finally {
+            DriverManager.setReuseDrivers(false);
+            DriverManager.quitDriver();
+        }
+
+        long flaky = failures.values().stream().filter(f -> f.passed).count();
+        logger.info("Rerun complete: {} flaky, {} failed", flaky, failures.size() - flaky);
+        logger.info("=========================\n");
+    }
+
+    private void writeReport() {
+        ExtentReports extent = ExtentReportManager.getReportInstance();
+        for (Map.Entry<String, Failure> entry : failures.entrySet()) {
+            Failure failure = entry.getValue();
+            ExtentTest test = extent.createTest(failure.name, entry.getKey())
+                    .assignCategory(failure.passed ? "Flaky" : "Failed");
+            String outcome = failure.passed
+                    ? "Passed on rerun attempt " + failure.attempts + " after failing in the main run"
+                    : "Still failing after " + failure.attempts + " rerun attempt(s)";
+            test.log(failure.passed ? Status.WARNING : Status.FAIL, outcome);
+            if (!failure.passed && failure.lastError != null) {
+                test.log(Status.INFO, failure.lastError);
+            }
+        }
+        extent.flush();
+    }
+
+    private void writeRerunFile() {
+        Path rerunFile = Paths.get(DriverManager.getConfig("rerun.file", "target/rerun/failed-scenarios.txt"));
+        List<String> stillFailing = new ArrayList<>();
+        failures.forEach((location, failure) -> {
+            if (!failure.passed) {
+                stillFailing.add(location);
+            }
+        });
+        try {
+            Files.createDirectories(rerunFile.toAbsolutePath().getParent());
+            Files.write(rerunFile, stillFailing, StandardCharsets.UTF_8);
+            if (!stillFailing.isEmpty()) {
+                logger.info("Failed scenarios written to: {}", rerunFile.toAbsolutePath());
+            }
+        } catch (IOException e) {
+            logger.error("Error writing rerun file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Location of a scenario in the form accepted by cucumber.features, e.g.
+     * classpath:features/WebsiteNavigation.feature:4
+     */
+    private static String locationOf(TestSource source) {
+        if (source instanceof ClasspathResourceSource) {
+            ClasspathResourceSource resource = (ClasspathResourceSource) source;
+            return "classpath:" + resource.getClasspathResourceName()
+                   + resource.getPosition().map(p -> ":" + p.getLine()).orElse("");
+        }
+        if (source instanceof FileSource) {
+            FileSource file = (FileSource) source;
+            return file.getFile().getPath() + file.getPosition().map(p -> ":" + p.getLine()).orElse("");
+        }
+        return null;
+    }
+
+    private static DiscoverySelector selectorFor(TestSource source) {
+        if (source instanceof ClasspathResourceSource) {
+            ClasspathResourceSource resource = (ClasspathResourceSource) source;
+            return DiscoverySelectors.selectClasspathResource(resource.getClasspathResourceName(),
+                    resource.getPosition().map(p -> FilePosition.from(p.getLine())).orElse(null));
+        }
+        if (source instanceof FileSource) {
+            FileSource file = (FileSource) source;
+            FilePosition position = file.getPosition().map(p -> FilePosition.from(p.getLine())).orElse(null);
+            return DiscoverySelectors.selectFile(file.getFile(), position);
+        }
+        return null;
+    }
+
+    private static class Failure {
+        private final String name;
+        private final DiscoverySelector selector;
+        private int attempts;
+        private boolean passed;
+        private String lastError;
+
+        Failure(String name, DiscoverySelector selector) {
+            this.name = name;
+            this.selector = selector;
+        }
+    }
+}
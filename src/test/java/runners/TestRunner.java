@@ -18,4 +18,7 @@ import static io.cucumber.junit.platform.engine.Constants.FILTER_TAGS_PROPERTY_N
 public class TestRunner {
     // This class is empty, all configuration is done through annotations
     // For report generation, use the ScreenshotReportGenerator utility class
+    // Failed scenarios are re-executed at the end of the run by RerunFailedScenarios (rerun.maxAttempts)
+    // For load runs against the same glue, see LoadTestRunner
+    // To run every scenario on several browsers at once, see MatrixRunner
 }
@@ -0,0 +1,100 @@
+package stepdefinitions;
+
+import io.cucumber.java.Before;
+import io.cucumber.java.Scenario;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.junit.jupiter.api.Assertions;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.DataDrivenResults;
+import utils.DriverManager;
+import utils.StreamingDataSource;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+/**
+ * Step definitions for data-driven scenarios that read their rows from a CSV or JSONL file.
+ *
+ * Each Scenario Outline example handles one partition of the file, so the partitions
+ * run in parallel on the scenario threads. The login itself reuses the steps of
+ * {@link WebsiteNavigationSteps}, which picocontainer injects for the same scenario.
+ */
+public class DataDrivenSteps {
+    private static final Logger logger = LoggerFactory.getLogger(DataDrivenSteps.class);
+
+    private final WebsiteNavigationSteps navigationSteps;
+    private final DataDrivenResults.Tally results = new DataDrivenResults.Tally(
+            Integer.parseInt(DriverManager.getConfig("data.report.maxRows", "100")));
+    private Scenario scenario;
+    private String dataSet;
+    private int partitions;
+    private int partition;
+
+    public DataDrivenSteps(WebsiteNavigationSteps navigationSteps) {
+        this.navigationSteps = navigationSteps;
+    }
+
+    // After Hooks.setUp, so the injected navigation steps pick up this scenario's driver
+    @Before(order = 20000)
+    public void rememberScenario(Scenario scenario) {
+        this.scenario = scenario;
+    }
+
+    @Given("the data set {string} split into {int} partitions")
+    public void the_data_set_split_into_partitions(String dataSet, int partitions) {
+        this.dataSet = dataSet;
+        this.partitions = partitions;
+    }
+
+    @When("I try to log in with every row of partition {int}")
+    public void i_try_to_log_in_with_every_row_of_partition(int partition) {
+        this.partition = partition;
+        WebDriver driver = DriverManager.getDriver();
+        String loginUrl = DriverManager.getConfig("base.url", "https://the-internet.herokuapp.com/") + "login";
+        WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(30));
+
+        logger.info("Running partition {} of {} from {}", partition, partitions, dataSet);
+        try (Stream<StreamingDataSource.Row> rows = StreamingDataSource.rows(dataSet, partition, partitions)) {
+            rows.forEach(row -> {
+                long start = System.currentTimeMillis();
+                boolean passed;
+                String detail;
+                try {
+                    driver.get(loginUrl);
+                    navigationSteps.i_enter_credentials(row.get("username"), row.get("password"));
+                    WebElement flash = wait.until(ExpectedConditions.visibilityOfElementLocated(By.id("flash")));
+                    detail = flash.getText().replace("\u00d7", "").trim();
+                    passed = detail.contains(row.get("message"));
+                } catch (Exception e) {
+                    passed = false;
+                    detail = e.getClass().getSimpleName() + ": " + e.getMessage();
+                }
+                DataDrivenResults.RowResult result = new DataDrivenResults.RowResult(
+                        row, partition, passed, detail, System.currentTimeMillis() - start);
+                results.add(result);
+                DataDrivenResults.record(dataSet, result);
+                logger.debug("Row {}: {} ({})", row.getNumber(), passed ? "passed" : "failed", detail);
+            });
+        }
+    }
+
+    @Then("every row should have had its expected outcome")
+    public void every_row_should_have_had_its_expected_outcome() {
+        long failed = results.getFailed();
+        logger.info("Partition {} of {}: {} row(s), {} failed", partition, partitions, results.getRows(), failed);
+        scenario.attach(DataDrivenResults.toHtml(dataSet + " partition " + partition, results).getBytes(),
+                        "text/html", "data_driven_results");
+
+        Assertions.assertTrue(results.getRows() > 0, "Partition " + partition + " of " + dataSet + " has no rows");
+        Assertions.assertEquals(0, failed, failed + " of " + results.getRows() + " row(s) in partition "
+                                           + partition + " did not have the expected outcome");
+    }
+}
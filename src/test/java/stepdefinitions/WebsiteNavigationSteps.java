@@ -9,6 +9,8 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import utils.DriverManager;
 
 import java.time.Duration;
@@ -17,6 +19,7 @@ import java.time.Duration;
  * Step definitions for website navigation tests using a more automation-friendly site
  */
 public class WebsiteNavigationSteps {
+    private static final Logger logger = LoggerFactory.getLogger(WebsiteNavigationSteps.class);
 
     private final WebDriver driver;
     private final WebDriverWait wait;
@@ -24,17 +27,17 @@ public class WebsiteNavigationSteps {
     public WebsiteNavigationSteps() {
         this.driver = DriverManager.getDriver();
         this.wait = new WebDriverWait(driver, Duration.ofSeconds(30));
-        System.out.println("WebsiteNavigationSteps initialized with driver: " + driver.getClass().getName());
+        logger.info("WebsiteNavigationSteps initialized with driver: {}", driver.getClass().getName());
     }
 
     @Given("I navigate to The Internet demo site")
     public void i_navigate_to_demo_site() {
         try {
-            System.out.println("Navigating to The Internet demo site...");
-            driver.get("https://the-internet.herokuapp.com/");
+            logger.info("Navigating to The Internet demo site...");
+            driver.get(DriverManager.getConfig("base.url", "https://the-internet.herokuapp.com/"));
             
             String pageTitle = driver.getTitle();
-            System.out.println("Current page title: " + pageTitle);
+            logger.info("Current page title: {}", pageTitle);
             
             // Verify we're on the correct page
             Assertions.assertTrue(
@@ -42,10 +45,9 @@ public class WebsiteNavigationSteps {
                 "Expected to be on The Internet demo site, but page title was: " + pageTitle
             );
             
-            System.out.println("Successfully navigated to The Internet demo site");
+            logger.info("Successfully navigated to The Internet demo site");
         } catch (Exception e) {
-            System.err.println("Error navigating to demo site: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error navigating to demo site: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -53,19 +55,18 @@ public class WebsiteNavigationSteps {
     @When("I click on the Form Authentication link")
     public void i_click_on_form_authentication_link() {
         try {
-            System.out.println("Clicking on Form Authentication link...");
+            logger.info("Clicking on Form Authentication link...");
             
             // Find and click the Form Authentication link
             WebElement formAuthLink = wait.until(ExpectedConditions.elementToBeClickable(
                     By.linkText("Form Authentication")));
             
-            System.out.println("Found link: " + formAuthLink.getText());
+            logger.info("Found link: {}", formAuthLink.getText());
             formAuthLink.click();
             
-            System.out.println("Clicked on Form Authentication link");
+            logger.info("Clicked on Form Authentication link");
         } catch (Exception e) {
-            System.err.println("Error clicking Form Authentication link: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error clicking Form Authentication link: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -73,7 +74,7 @@ public class WebsiteNavigationSteps {
     @Then("I should be on the login page")
     public void i_should_be_on_login_page() {
         try {
-            System.out.println("Verifying login page is displayed...");
+            logger.info("Verifying login page is displayed...");
             
             // Wait for login form to be present
             wait.until(ExpectedConditions.visibilityOfElementLocated(By.id("login")));
@@ -83,19 +84,18 @@ public class WebsiteNavigationSteps {
             boolean passwordFieldPresent = driver.findElement(By.id("password")).isDisplayed();
             boolean loginButtonPresent = driver.findElement(By.cssSelector("button[type='submit']")).isDisplayed();
             
-            System.out.println("Username field present: " + usernameFieldPresent);
-            System.out.println("Password field present: " + passwordFieldPresent);
-            System.out.println("Login button present: " + loginButtonPresent);
+            logger.info("Username field present: {}", usernameFieldPresent);
+            logger.info("Password field present: {}", passwordFieldPresent);
+            logger.info("Login button present: {}", loginButtonPresent);
             
             // Verify expected elements are present
             Assertions.assertTrue(usernameFieldPresent, "Username field should be displayed");
             Assertions.assertTrue(passwordFieldPresent, "Password field should be displayed");
             Assertions.assertTrue(loginButtonPresent, "Login button should be displayed");
             
-            System.out.println("Successfully verified login page is displayed");
+            logger.info("Successfully verified login page is displayed");
         } catch (Exception e) {
-            System.err.println("Error verifying login page: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error verifying login page: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -103,7 +103,7 @@ public class WebsiteNavigationSteps {
     @When("I enter username {string} and password {string}")
     public void i_enter_credentials(String username, String password) {
         try {
-            System.out.println("Entering username and password...");
+            logger.info("Entering username and password...");
             
             // Enter username
             WebElement usernameField = driver.findElement(By.id("username"));
@@ -119,10 +119,9 @@ public class WebsiteNavigationSteps {
             WebElement loginButton = driver.findElement(By.cssSelector("button[type='submit']"));
             loginButton.click();
             
-            System.out.println("Credentials entered and login button clicked");
+            logger.info("Credentials entered and login button clicked");
         } catch (Exception e) {
-            System.err.println("Error entering credentials: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error entering credentials: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -130,14 +129,14 @@ public class WebsiteNavigationSteps {
     @Then("I should see a success message")
     public void i_should_see_success_message() {
         try {
-            System.out.println("Verifying success message...");
+            logger.info("Verifying success message...");
             
             // Wait for the success message to be visible
             WebElement flashMessage = wait.until(ExpectedConditions.visibilityOfElementLocated(
                     By.id("flash")));
             
             String messageText = flashMessage.getText();
-            System.out.println("Message displayed: " + messageText);
+            logger.info("Message displayed: {}", messageText);
             
             // Verify the message contains expected text
             Assertions.assertTrue(
@@ -149,10 +148,9 @@ public class WebsiteNavigationSteps {
             boolean logoutButtonPresent = driver.findElement(By.cssSelector(".button.secondary")).isDisplayed();
             Assertions.assertTrue(logoutButtonPresent, "Logout button should be displayed after successful login");
             
-            System.out.println("Successfully verified login success message");
+            logger.info("Successfully verified login success message");
         } catch (Exception e) {
-            System.err.println("Error verifying success message: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error verifying success message: {}", e.getMessage(), e);
             throw e;
         }
     }
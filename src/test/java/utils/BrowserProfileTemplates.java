@@ -0,0 +1,343 @@
+package utils;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.service.DriverService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Pre-baked browser profiles for fast Chrome/Firefox cold starts.
+ *
+ * A warmed profile (first-run work, component registration and initial databases
+ * already done) is built once per browser under profile.template.dir, which defaults
+ * to ~/.cache/selenium-profile-templates so it survives mvn clean. The template records
+ * the browser version it was built with and is rebuilt after a browser upgrade, so
+ * sessions never start on a profile the browser first has to migrate. Every session
+ * then gets its own clone of that template, placed on tmpfs (/dev/shm) when available.
+ * Clones are copies by default; profile.clone.mode=link hard-links the files instead,
+ * which is faster but lets a browser that writes in place modify the template.
+ * If the warm-up browser cannot be started, the template is not retried for the rest
+ * of the run and sessions start on an empty profile. The warm-up browser and its driver
+ * are tracked by ProcessLifecycleTracker like any session, so they are reaped if the
+ * warm-up hangs or the JVM dies while it runs.
+ */
+public class BrowserProfileTemplates {
+    private static final Logger logger = LoggerFactory.getLogger(BrowserProfileTemplates.class);
+
+    private static final String READY_MARKER = ".template-ready";
+
+    // Chrome lock files that must not be carried over into a clone
+    private static final List<String> SKIPPED_FILES = Arrays.asList(
+            "SingletonLock", "SingletonSocket", "SingletonCookie", "lock", "parent.lock", ".parentlock");
+
+    private static final List<String> CHROME_FAST_START_ARGS = Arrays.asList(
+            "--no-first-run",
+            "--no-default-browser-check",
+            "--disable-extensions",
+            "--disable-component-update",
+            "--disable-background-networking",
+            "--disable-sync",
+            "--disable-default-apps",
+            "--disable-client-side-phishing-detection",
+            "--disable-background-timer-throttling",
+            "--disable-backgrounding-occluded-windows",
+            "--disable-renderer-backgrounding",
+            "--disable-hang-monitor",
+            "--disable-features=Translate,OptimizationHints,MediaRouter",
+            "--metrics-recording-only",
+            "--password-store=basic",
+            "--use-mock-keychain",
+            "--mute-audio");
+
+    private static final Map<String, Object> FIREFOX_FAST_START_PREFS = Map.ofEntries(
+            Map.entry("browser.shell.checkDefaultBrowser", false),
+            Map.entry("browser.startup.homepage_override.mstone", "ignore"),
+            Map.entry("browser.startup.page", 0),
+            Map.entry("browser.newtabpage.enabled", false),
+            Map.entry("datareporting.policy.dataSubmissionEnabled", false),
+            Map.entry("datareporting.healthreport.uploadEnabled", false),
+            Map.entry("toolkit.telemetry.reportingpolicy.firstRun", false),
+            Map.entry("app.update.auto", false),
+            Map.entry("extensions.update.enabled", false),
+            Map.entry("browser.safebrowsing.malware.enabled", false),
+            Map.entry("browser.safebrowsing.phishing.enabled", false),
+            Map.entry("network.captive-portal-service.enabled", false),
+            Map.entry("network.connectivity-service.enabled", false));
+
+    private static final ThreadLocal<Path> sessionProfile = new ThreadLocal<>();
+    // Browsers whose template could not be built in this run, so no session waits on it again
+    private static final Set<String> failedTemplates = new HashSet<>();
+    // Installed browser versions, detected once per run
+    private static final Map<String, String> installedVersions = new HashMap<>();
+
+    private BrowserProfileTemplates() {
+        // Private constructor to prevent instantiation
+    }
+
+    public static boolean isTemplateEnabled() {
+        return Boolean.parseBoolean(DriverManager.getConfig("profile.template.enabled", "false"));
+    }
+
+    public static boolean isFastStartEnabled() {
+        return Boolean.parseBoolean(DriverManager.getConfig("browser.fastStart", "false"));
+    }
+
+    /**
+     * Adds the curated fast-start flags to the Chrome options
+     */
+    public static void applyFastStart(ChromeOptions options) {
+        options.addArguments(CHROME_FAST_START_ARGS);
+    }
+
+    /**
+     * Adds the curated fast-start preferences to the Firefox options
+     */
+    public static void applyFastStart(FirefoxOptions options) {
+        FIREFOX_FAST_START_PREFS.forEach(options::addPreference);
+    }
+
+    /**
+     * Points Chrome at a fresh clone of the warmed Chrome template
+     */
+    public static void applyTemplate(ChromeOptions options) throws IOException {
+        Path template = templateFor("chrome", dir -> {
+            ChromeOptions warmup = new ChromeOptions();
+            warmup.addArguments("--headless=new", "--disable-gpu", "--remote-allow-origins=*");
+            warmup.addArguments(CHROME_FAST_START_ARGS);
+            warmup.addArguments("--user-data-dir=" + dir.toAbsolutePath());
+            ChromeDriverService service = ChromeDriverService.createDefaultService();
+            return launchTracked(service, () -> new ChromeDriver(service, warmup));
+        });
+        options.addArguments("--user-data-dir=" + cloneForSession(template));
+    }
+
+    /**
+     * Points Firefox at a fresh clone of the warmed Firefox template
+     */
+    public static void applyTemplate(FirefoxOptions options) throws IOException {
+        Path template = templateFor("firefox", dir -> {
+            FirefoxOptions warmup = new FirefoxOptions();
+            warmup.addArguments("--headless", "-profile", dir.toAbsolutePath().toString());
+            FIREFOX_FAST_START_PREFS.forEach(warmup::addPreference);
+            GeckoDriverService service = GeckoDriverService.createDefaultService();
+            return launchTracked(service, () -> new FirefoxDriver(service, warmup));
+        });
+        options.addArguments("-profile", cloneForSession(template).toString());
+    }
+
+    /**
+     * Deletes the profile clone used by the current thread's session, if any
+     */
+    public static void releaseSessionProfile() {
+        Path clone = sessionProfile.get();
+        if (clone != null) {
+            sessionProfile.remove();
+            try {
+                deleteRecursively(clone);
+            } catch (IOException e) {
+                logger.error("Error deleting profile clone {}: {}", clone, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the template directory for a browser, building it on first use.
+     * A template left behind by an earlier run is reused as long as it is marked ready
+     * and was built with the browser version that is installed now.
+     */
+    private static synchronized Path templateFor(String browser, WarmupLauncher launcher) throws IOException {
+        Path template = templateRoot().resolve(browser);
+        Path marker = template.resolve(READY_MARKER);
+        String version = installedVersion(browser);
+        if (Files.exists(marker)) {
+            String builtWith = new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim();
+            if (builtWith.equals(version)) {
+                return template;
+            }
+            logger.info("{} profile template was built with {}, rebuilding it for {}", browser,
+                        builtWith.isEmpty() ? "an unknown version" : builtWith, version);
+        }
+        if (failedTemplates.contains(browser)) {
+            throw new IOException("the " + browser + " profile template could not be built earlier in this run");
+        }
+
+        logger.info("Building {} profile template at {}", browser, template.toAbsolutePath());
+        if (Files.exists(template)) {
+            deleteRecursively(template);
+        }
+        Files.createDirectories(template);
+
+        long start = System.currentTimeMillis();
+        ProcessLifecycleTracker tracker = ProcessLifecycleTracker.getInstance();
+        try {
+            WebDriver warmupDriver = launcher.launch(template);
+            try {
+                warmupDriver.get("about:blank");
+                warmupDriver.quit();
+                tracker.quitCompleted(warmupDriver);
+            } catch (RuntimeException e) {
+                tracker.kill(warmupDriver);
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            failedTemplates.add(browser);
+            deleteRecursively(template);
+            throw new IOException("warm-up " + browser + " failed to start: " + e.getMessage(), e);
+        }
+        Files.write(marker, version.getBytes(StandardCharsets.UTF_8));
+        logger.info("{} profile template built in {} ms", browser, System.currentTimeMillis() - start);
+        return template;
+    }
+
+    /**
+     * The installed browser's version as reported by its --version, e.g. "Mozilla Firefox 121.0"
+     */
+    private static String installedVersion(String browser) {
+        return installedVersions.computeIfAbsent(browser, name -> {
+            WebDriverManager manager = "chrome".equals(name)
+                    ? WebDriverManager.chromedriver() : WebDriverManager.firefoxdriver();
+            Optional<Path> binary = manager.getBrowserPath();
+            if (!binary.isPresent()) {
+                logger.warn("{} binary not found, its profile template cannot be checked against browser upgrades", name);
+                return "unknown";
+            }
+            try {
+                Process process = new ProcessBuilder(binary.get().toString(), "--version")
+                        .redirectErrorStream(true).start();
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                    return "unknown";
+                }
+                String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+                return output.isEmpty() ? "unknown" : output;
+            } catch (IOException e) {
+                logger.warn("Error detecting the {} version: {}", name, e.getMessage());
+                return "unknown";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "unknown";
+            }
+        });
+    }
+
+    /**
+     * Starts the warm-up session on a tracked driver service, the same way DriverManager starts sessions
+     */
+    private static WebDriver launchTracked(DriverService service, Supplier<WebDriver> session) throws IOException {
+        ProcessLifecycleTracker tracker = ProcessLifecycleTracker.getInstance();
+        List<ProcessHandle> processes = tracker.startService(service);
+        try {
+            WebDriver driver = session.get();
+            tracker.register(driver, processes);
+            return driver;
+        } catch (RuntimeException e) {
+            service.stop();
+            tracker.kill(processes);
+            throw e;
+        }
+    }
+
+    private static Path cloneForSession(Path template) throws IOException {
+        // Drop any clone the thread still holds, e.g. when a previous quit failed
+        releaseSessionProfile();
+
+        Path cloneRoot = Paths.get(DriverManager.getConfig("profile.clone.dir", defaultCloneRoot()));
+        Path clone = cloneRoot.resolve("selenium-profile-" + UUID.randomUUID());
+        boolean hardLink = "link".equalsIgnoreCase(DriverManager.getConfig("profile.clone.mode", "copy"));
+
+        Files.walkFileTree(template, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(clone.resolve(template.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = file.getFileName().toString();
+                if (SKIPPED_FILES.contains(name) || READY_MARKER.equals(name) || !attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path target = clone.resolve(template.relativize(file).toString());
+                if (hardLink) {
+                    try {
+                        Files.createLink(target, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        // Different file system (e.g. template on disk, clone on tmpfs): fall back to a copy
+                    }
+                }
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        sessionProfile.set(clone);
+        return clone.toAbsolutePath();
+    }
+
+    private static Path templateRoot() {
+        String configured = DriverManager.getConfig("profile.template.dir", "").trim();
+        return configured.isEmpty()
+                ? Paths.get(System.getProperty("user.home"), ".cache", "selenium-profile-templates")
+                : Paths.get(configured);
+    }
+
+    private static String defaultCloneRoot() {
+        Path shm = Paths.get("/dev/shm");
+        return Files.isDirectory(shm) && Files.isWritable(shm) ? shm.toString() : System.getProperty("java.io.tmpdir");
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Starts a browser on a template directory so it can initialize the profile
+     */
+    private interface WarmupLauncher {
+        WebDriver launch(Path templateDir) throws IOException;
+    }
+}
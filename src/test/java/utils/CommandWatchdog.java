@@ -0,0 +1,171 @@
+package utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-command watchdog for WebDriver sessions.
+ *
+ * Every call on a watched driver (and on the elements, navigation and options objects
+ * it hands out) is timed against a budget. When a command overruns its budget the
+ * session is considered wedged: the stall is recorded, the browser is killed so the
+ * blocked thread gets an error instead of waiting forever, and DriverManager starts
+ * a replacement driver on the next getDriver() call.
+ *
+ * Budgets come from watchdog.budget.ms, with per-command overrides such as
+ * watchdog.budget.get.ms or watchdog.budget.findElement.ms.
+ */
+public class CommandWatchdog implements WebDriverListener {
+    private static final Logger logger = LoggerFactory.getLogger(CommandWatchdog.class);
+
+    private static final Map<WebDriver, CommandWatchdog> watchedDrivers =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+    private static final Map<String, AtomicLong> stallsByCommand = new ConcurrentHashMap<>();
+    private static final Map<String, Long> budgetsByCommand = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService checker;
+
+    private final Runnable killer;
+    private final long defaultBudgetNanos;
+    private volatile String currentCommand;
+    private volatile long commandStartNanos;
+    private volatile long commandBudgetNanos;
+    private volatile boolean wedged;
+
+    private CommandWatchdog(Runnable killer) {
+        this.killer = killer;
+        this.defaultBudgetNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.parseLong(DriverManager.getConfig("watchdog.budget.ms", "90000")));
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(DriverManager.getConfig("watchdog.enabled", "false"));
+    }
+
+    /**
+     * Wraps a driver so that every command it executes is watched.
+     *
+     * @param driver the driver to watch
+     * @param killer forcibly terminates the browser behind the driver
+     * @return the decorated driver to hand out to tests
+     */
+    public static WebDriver watch(WebDriver driver, Runnable killer) {
+        startChecker();
+        CommandWatchdog watchdog = new CommandWatchdog(killer);
+        WebDriver decorated = new EventFiringDecorator<WebDriver>(watchdog).decorate(driver);
+        watchedDrivers.put(decorated, watchdog);
+        return decorated;
+    }
+
+    /**
+     * Stops watching a driver, e.g. once it has been quit
+     */
+    public static void unwatch(WebDriver driver) {
+        watchedDrivers.remove(driver);
+    }
+
+    /**
+     * Whether the watchdog killed this driver's browser after a hung command
+     */
+    public static boolean isWedged(WebDriver driver) {
+        CommandWatchdog watchdog = watchedDrivers.get(driver);
+        return watchdog != null && watchdog.wedged;
+    }
+
+    /**
+     * Summary of stalled commands, e.g. for logging at the end of a run
+     *
+     * @return command names with the number of times each overran its budget
+     */
+    public static String getStallStats() {
+        if (stallsByCommand.isEmpty()) {
+            return "no stalled commands";
+        }
+        Map<String, Long> sorted = new TreeMap<>();
+        stallsByCommand.forEach((command, count) -> sorted.put(command, count.get()));
+        return sorted.toString();
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        commandBudgetNanos = budgetFor(method.getName());
+        commandStartNanos = System.nanoTime();
+        currentCommand = target.getClass().getSimpleName() + "." + method.getName();
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        currentCommand = null;
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        currentCommand = null;
+    }
+
+    private long budgetFor(String methodName) {
+        return budgetsByCommand.computeIfAbsent(methodName, name -> {
+            String override = DriverManager.getConfig("watchdog.budget." + name + ".ms", null);
+            return override != null ? TimeUnit.MILLISECONDS.toNanos(Long.parseLong(override)) : defaultBudgetNanos;
+        });
+    }
+
+    private static synchronized void startChecker() {
+        if (checker != null) {
+            return;
+        }
+        long pollMs = Long.parseLong(DriverManager.getConfig("watchdog.poll.ms", "1000"));
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "webdriver-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(CommandWatchdog::checkAll, pollMs, pollMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void checkAll() {
+        CommandWatchdog[] watchdogs;
+        synchronized (watchedDrivers) {
+            watchdogs = watchedDrivers.values().toArray(new CommandWatchdog[0]);
+        }
+        long now = System.nanoTime();
+        for (CommandWatchdog watchdog : watchdogs) {
+            String command = watchdog.currentCommand;
+            if (command != null && !watchdog.wedged && now - watchdog.commandStartNanos > watchdog.commandBudgetNanos) {
+                watchdog.recycle(command, now);
+            }
+        }
+    }
+
+    private void recycle(String command, long now) {
+        wedged = true;
+        stallsByCommand.computeIfAbsent(command, c -> new AtomicLong()).incrementAndGet();
+        logger.warn("Watchdog: {} exceeded its budget ({} ms), killing the browser",
+                    command, TimeUnit.NANOSECONDS.toMillis(now - commandStartNanos));
+
+        // Kill on a separate thread so a stuck kill cannot stall the watchdog itself
+        Thread killThread = new Thread(() -> {
+            try {
+                killer.run();
+            } catch (Exception e) {
+                logger.error("Watchdog: error killing wedged browser: {}", e.getMessage());
+            }
+        }, "webdriver-watchdog-kill");
+        killThread.setDaemon(true);
+        killThread.start();
+    }
+}
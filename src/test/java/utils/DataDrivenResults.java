@@ -0,0 +1,227 @@
+package utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the per-row results of data-driven scenarios from all scenario threads and
+ * writes one HTML results table per data file to target/data-driven/ at the end of the run.
+ *
+ * Data files can have millions of rows, so no row results are kept in memory: each row
+ * is written to a spool file as it is recorded and copied into the report at the end,
+ * and only pass/fail counters plus a bounded sample of failures are held per partition.
+ */
+public class DataDrivenResults {
+    private static final Logger logger = LoggerFactory.getLogger(DataDrivenResults.class);
+
+    private static final String REPORT_DIR = "target/data-driven/";
+    private static final String TABLE_HEADER = "<table style='border-collapse:collapse; font-size:12px;'>"
+            + "<tr><th>Row</th><th>Partition</th><th>Data</th><th>Result</th><th>Detail</th><th>ms</th></tr>";
+
+    private static final Map<String, DataSet> dataSets = new ConcurrentHashMap<>();
+
+    private DataDrivenResults() {
+        // Utility class
+    }
+
+    /**
+     * Outcome of one data row
+     */
+    public static class RowResult {
+        private final long number;
+        private final int partition;
+        private final String values;
+        private final boolean passed;
+        private final String detail;
+        private final long durationMs;
+
+        public RowResult(StreamingDataSource.Row row, int partition, boolean passed, String detail, long durationMs) {
+            this.number = row.getNumber();
+            this.partition = partition;
+            this.values = row.getValues().entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining(", "));
+            this.passed = passed;
+            this.detail = detail;
+            this.durationMs = durationMs;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+    }
+
+    /**
+     * Row and failure counts of one partition, with the first failures as a sample
+     */
+    public static class Tally {
+        private final int maxFailures;
+        private final List<RowResult> failures = new ArrayList<>();
+        private long rows;
+        private long failed;
+
+        /**
+         * @param maxFailures how many failed rows to keep for the report; the rest are only counted
+         */
+        public Tally(int maxFailures) {
+            this.maxFailures = maxFailures;
+        }
+
+        public void add(RowResult result) {
+            rows++;
+            if (!result.passed) {
+                failed++;
+                if (failures.size() < maxFailures) {
+                    failures.add(result);
+                }
+            }
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+    }
+
+    /**
+     * Counters and spooled rows of one data file
+     */
+    private static class DataSet {
+        private final Path spool;
+        private final BufferedWriter writer;
+        private long rows;
+        private long failed;
+
+        DataSet() throws IOException {
+            spool = Files.createTempFile("data-driven-", ".rows");
+            spool.toFile().deleteOnExit();
+            writer = Files.newBufferedWriter(spool, StandardCharsets.UTF_8);
+        }
+
+        synchronized void add(RowResult result) throws IOException {
+            rows++;
+            if (!result.passed) {
+                failed++;
+            }
+            writer.write(toRow(result));
+            writer.newLine();
+        }
+    }
+
+    public static void record(String dataSet, RowResult result) {
+        try {
+            DataSet results = dataSets.computeIfAbsent(dataSet, key -> {
+                try {
+                    return new DataSet();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot create spool file for " + key, e);
+                }
+            });
+            results.add(result);
+        } catch (IOException | IllegalStateException e) {
+            logger.error("Error recording row {} of {}: {}", result.number, dataSet, e.getMessage());
+        }
+    }
+
+    public static boolean hasResults() {
+        return !dataSets.isEmpty();
+    }
+
+    /**
+     * Renders a partition's counts and its sampled failures as an HTML table
+     */
+    public static String toHtml(String title, Tally tally) {
+        StringBuilder html = new StringBuilder();
+        html.append("<div style='background:#f8f9fa; padding:15px; border-radius:5px; border:1px solid #ddd;'>")
+            .append("<h3 style='color:#2c3e50;'>").append(escape(title)).append("</h3>")
+            .append(counts(tally.rows, tally.failed))
+            .append(TABLE_HEADER);
+        tally.failures.stream()
+                .sorted(Comparator.comparingLong((RowResult r) -> r.number))
+                .forEach(result -> html.append(toRow(result)));
+        html.append("</table>");
+        long notShown = tally.rows - tally.failures.size();
+        if (notShown > 0) {
+            html.append("<p><small>").append(notShown).append(" more row(s) not shown, ")
+                .append(tally.failed - tally.failures.size()).append(" of them failed</small></p>");
+        }
+        return html.append("</div>").toString();
+    }
+
+    private static String counts(long rows, long failed) {
+        return "<p><strong>Rows:</strong> " + rows
+               + " &nbsp; <strong style='color:green;'>Passed:</strong> " + (rows - failed)
+               + " &nbsp; <strong style='color:red;'>Failed:</strong> " + failed + "</p>";
+    }
+
+    private static String toRow(RowResult result) {
+        return "<tr style='border-top:1px solid #ddd;'>"
+               + "<td>" + result.number + "</td>"
+               + "<td>" + result.partition + "</td>"
+               + "<td>" + escape(result.values) + "</td>"
+               + "<td style='color:" + (result.passed ? "green" : "red") + ";'>"
+               + (result.passed ? "PASSED" : "FAILED") + "</td>"
+               + "<td>" + escape(result.detail) + "</td>"
+               + "<td>" + result.durationMs + "</td></tr>";
+    }
+
+    /**
+     * Writes the aggregated results of every data file, copying the spooled rows line by line.
+     * The spool files stay open, so runtimes that finish later rewrite the reports with their rows added.
+     */
+    public static void writeReports() {
+        for (Map.Entry<String, DataSet> entry : dataSets.entrySet()) {
+            DataSet results = entry.getValue();
+            String name = Paths.get(entry.getKey()).getFileName().toString().replaceAll("\\W+", "_");
+            Path report = Paths.get(REPORT_DIR, name + ".html");
+            synchronized (results) {
+                try {
+                    results.writer.flush();
+                    Files.createDirectories(report.getParent());
+                    try (BufferedReader rows = Files.newBufferedReader(results.spool, StandardCharsets.UTF_8);
+                         BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                        writer.write("<!DOCTYPE html><html><head><meta charset='utf-8'><title>");
+                        writer.write(escape(entry.getKey()));
+                        writer.write("</title></head><body style='font-family:Arial;'>");
+                        writer.write("<div style='background:#f8f9fa; padding:15px; border-radius:5px; border:1px solid #ddd;'>");
+                        writer.write("<h3 style='color:#2c3e50;'>" + escape("Data-driven results: " + entry.getKey()) + "</h3>");
+                        writer.write(counts(results.rows, results.failed));
+                        writer.write(TABLE_HEADER);
+                        writer.newLine();
+                        String row;
+                        while ((row = rows.readLine()) != null) {
+                            writer.write(row);
+                            writer.newLine();
+                        }
+                        writer.write("</table></div></body></html>");
+                    }
+                    logger.info("Data set {}: {} row(s), {} failed, results in {}",
+                                entry.getKey(), results.rows, results.failed, report.toAbsolutePath());
+                } catch (IOException e) {
+                    logger.error("Error writing data-driven report: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static String escape(String text) {
+        return text == null ? "" : text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -1,20 +1,35 @@
 package utils;
 
+import com.gargoylesoftware.htmlunit.WebClient;
 import io.github.bonigarcia.wdm.WebDriverManager;
+import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Proxy;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.edge.EdgeDriver;
 import org.openqa.selenium.edge.EdgeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
 import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.service.DriverService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 /**
  * Manages WebDriver instances for the test framework.
@@ -22,8 +37,15 @@ import java.util.Properties;
  * Uses driver.properties for configuration.
  */
 public class DriverManager {
+    private static final Logger logger = LoggerFactory.getLogger(DriverManager.class);
+
     private static final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+    // Undecorated driver, for type checks when the watchdog wraps the driver in a proxy
+    private static final ThreadLocal<WebDriver> rawDriver = new ThreadLocal<>();
+    // Browser chosen by the matrix runner; inherited by the scenario threads it starts
+    private static final InheritableThreadLocal<String> browserOverride = new InheritableThreadLocal<>();
     private static final Properties driverProps = new Properties();
+    private static final Map<String, LongSummaryStatistics> startupTimes = new TreeMap<>();
     
     // Environment detection flag
     private static final boolean IS_REPLIT = System.getenv("REPL_ID") != null;
@@ -34,6 +56,8 @@ public class DriverManager {
     private static int windowWidth = 1920;
     private static int windowHeight = 1080;
     private static int screenshotInterval = 1;
+    private static boolean sharedHtmlUnitCache = false;
+    private static volatile boolean reuseDrivers = false;
 
     static {
         // Load driver configuration
@@ -70,17 +94,24 @@ public class DriverManager {
                                driverProps.getProperty("window.height", "1080"));
                 screenshotInterval = Integer.parseInt(
                                     driverProps.getProperty("screenshot.interval", "1"));
+                sharedHtmlUnitCache = Boolean.parseBoolean(
+                                    getConfig("htmlunit.cache.shared", "false"));
                 
-                System.out.println("Driver properties loaded successfully");
+                logger.info("Driver properties loaded successfully");
             } else {
-                System.out.println("Driver properties file not found, using defaults");
+                logger.info("Driver properties file not found, using defaults");
             }
         } catch (IOException e) {
-            System.err.println("Error loading driver properties: " + e.getMessage());
+            logger.error("Error loading driver properties: {}", e.getMessage());
         }
     }
 
     public static WebDriver getDriver() {
+        if (driver.get() != null && CommandWatchdog.isWedged(driver.get())) {
+            // The watchdog killed this session's browser after a hung command; start a fresh one
+            logger.info("Recycling WebDriver after a hung command");
+            quitDriver();
+        }
         if (driver.get() == null) {
             initializeDriver();
         }
@@ -88,13 +119,21 @@ public class DriverManager {
     }
 
     public static void initializeDriver() {
-        System.out.println("Environment: " + (IS_REPLIT ? "Replit" : "Local"));
-        System.out.println("Browser: " + browserType);
-        System.out.println("Headless mode: " + headlessMode);
-        System.out.println("Window size: " + windowWidth + "x" + windowHeight);
+        if (reuseDrivers && driver.get() != null && !CommandWatchdog.isWedged(driver.get())) {
+            // Keep the warm driver from the previous scenario
+            return;
+        }
+        logger.info("Environment: {}", IS_REPLIT ? "Replit" : "Local");
+        logger.info("Browser: {}", getBrowserType());
+        logger.info("Headless mode: {}", headlessMode);
+        logger.info("Window size: {}x{}", windowWidth, windowHeight);
         
         try {
-            switch (browserType.toLowerCase()) {
+            if (GridRouter.isEnabled() && !"htmlunit".equalsIgnoreCase(getBrowserType())) {
+                initializeRemoteDriver();
+                return;
+            }
+            switch (getBrowserType().toLowerCase()) {
                 case "chrome":
                     initializeChromeDriver();
                     break;
@@ -105,25 +144,24 @@ public class DriverManager {
                     initializeHtmlUnitDriver();
                     break;
                 default:
-                    System.out.println("Unsupported browser specified, defaulting to Chrome");
+                    logger.warn("Unsupported browser specified, defaulting to Chrome");
                     initializeChromeDriver();
             }
         } catch (Exception e) {
-            System.err.println("Error initializing primary WebDriver: " + e.getMessage());
-            System.out.println("Falling back to HtmlUnit driver");
+            logger.error("Error initializing primary WebDriver: {}", e.getMessage());
+            logger.info("Falling back to HtmlUnit driver");
             
             try {
                 initializeHtmlUnitDriver();
             } catch (Exception e2) {
-                System.err.println("Error initializing fallback WebDriver: " + e2.getMessage());
-                e2.printStackTrace();
+                logger.error("Error initializing fallback WebDriver: {}", e2.getMessage(), e2);
                 throw new RuntimeException("WebDriver initialization failed", e2);
             }
         }
     }
     
     private static void initializeChromeDriver() {
-        System.out.println("Initializing ChromeDriver" + (headlessMode ? " in headless mode" : ""));
+        logger.info("Initializing ChromeDriver{}", headlessMode ? " in headless mode" : "");
         
         WebDriverManager.chromedriver().setup();
         
@@ -144,7 +182,30 @@ public class DriverManager {
             options.addArguments("--disable-dev-shm-usage");
         }
         
-        WebDriver chromeDriver = new ChromeDriver(options);
+        // Route traffic through the record/replay proxy when enabled
+        Proxy proxy = RecordReplayProxy.seleniumProxyIfEnabled();
+        if (proxy != null) {
+            options.setProxy(proxy);
+            RecordReplayProxy.sendLoopbackThroughProxy(options);
+        }
+        
+        // Fast-start flags and a cloned, pre-warmed profile to skip first-run work
+        if (BrowserProfileTemplates.isFastStartEnabled()) {
+            BrowserProfileTemplates.applyFastStart(options);
+        }
+        if (BrowserProfileTemplates.isTemplateEnabled()) {
+            try {
+                BrowserProfileTemplates.applyTemplate(options);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Profile template unavailable, using an empty profile: {}", e.getMessage());
+            }
+        }
+        
+        long launchStart = System.nanoTime();
+        ChromeDriverService service = ChromeDriverService.createDefaultService();
+        List<ProcessHandle> processes = startTrackedService(service);
+        WebDriver chromeDriver = startSession(service, processes, () -> new ChromeDriver(service, options));
+        recordStartupTime("chrome", launchStart);
         
         // Set browser window size
         chromeDriver.manage().window().setSize(new Dimension(windowWidth, windowHeight));
@@ -153,13 +214,13 @@ public class DriverManager {
         chromeDriver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(60));
         chromeDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(30));
         
-        System.out.println("ChromeDriver successfully initialized with window size: " 
-                          + chromeDriver.manage().window().getSize());
-        driver.set(chromeDriver);
+        logger.info("ChromeDriver successfully initialized with window size: {}", 
+                    chromeDriver.manage().window().getSize());
+        setDriver(chromeDriver, service::stop, processes);
     }
     
     private static void initializeFirefoxDriver() {
-        System.out.println("Initializing FirefoxDriver" + (headlessMode ? " in headless mode" : ""));
+        logger.info("Initializing FirefoxDriver{}", headlessMode ? " in headless mode" : "");
         
         WebDriverManager.firefoxdriver().setup();
         
@@ -170,7 +231,30 @@ public class DriverManager {
             options.addArguments("--headless");
         }
         
-        WebDriver firefoxDriver = new FirefoxDriver(options);
+        // Route traffic through the record/replay proxy when enabled
+        Proxy proxy = RecordReplayProxy.seleniumProxyIfEnabled();
+        if (proxy != null) {
+            options.setProxy(proxy);
+            RecordReplayProxy.sendLoopbackThroughProxy(options);
+        }
+        
+        // Fast-start preferences and a cloned, pre-warmed profile to skip first-run work
+        if (BrowserProfileTemplates.isFastStartEnabled()) {
+            BrowserProfileTemplates.applyFastStart(options);
+        }
+        if (BrowserProfileTemplates.isTemplateEnabled()) {
+            try {
+                BrowserProfileTemplates.applyTemplate(options);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Profile template unavailable, using an empty profile: {}", e.getMessage());
+            }
+        }
+        
+        long launchStart = System.nanoTime();
+        GeckoDriverService service = GeckoDriverService.createDefaultService();
+        List<ProcessHandle> processes = startTrackedService(service);
+        WebDriver firefoxDriver = startSession(service, processes, () -> new FirefoxDriver(service, options));
+        recordStartupTime("firefox", launchStart);
         
         // Set browser window size
         firefoxDriver.manage().window().setSize(new Dimension(windowWidth, windowHeight));
@@ -179,18 +263,73 @@ public class DriverManager {
         firefoxDriver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(60));
         firefoxDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(30));
         
-        System.out.println("FirefoxDriver successfully initialized with window size: " 
-                          + firefoxDriver.manage().window().getSize());
-        driver.set(firefoxDriver);
+        logger.info("FirefoxDriver successfully initialized with window size: {}", 
+                    firefoxDriver.manage().window().getSize());
+        setDriver(firefoxDriver, service::stop, processes);
+    }
+    
+    private static void initializeRemoteDriver() {
+        logger.info("Initializing RemoteWebDriver for {}", getBrowserType());
+        
+        Capabilities capabilities;
+        if ("firefox".equalsIgnoreCase(getBrowserType())) {
+            FirefoxOptions options = new FirefoxOptions();
+            options.addArguments("--headless");
+            if (BrowserProfileTemplates.isFastStartEnabled()) {
+                BrowserProfileTemplates.applyFastStart(options);
+            }
+            capabilities = options;
+        } else {
+            ChromeOptions options = new ChromeOptions();
+            options.addArguments("--remote-allow-origins=*", "--headless=new", "--disable-gpu");
+            if (BrowserProfileTemplates.isFastStartEnabled()) {
+                BrowserProfileTemplates.applyFastStart(options);
+            }
+            capabilities = options;
+        }
+        
+        long launchStart = System.nanoTime();
+        RemoteWebDriver remoteDriver = GridRouter.getInstance().newSession(capabilities);
+        recordStartupTime("remote-" + capabilities.getBrowserName(), launchStart);
+        
+        try {
+            remoteDriver.manage().window().setSize(new Dimension(windowWidth, windowHeight));
+            remoteDriver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(60));
+            remoteDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(30));
+        } catch (RuntimeException e) {
+            // Do not leave the remote browser running, or its slot counted as taken, before falling back
+            try {
+                remoteDriver.quit();
+            } catch (RuntimeException quitError) {
+                logger.warn("Error quitting remote session after failed setup: {}", quitError.getMessage());
+            } finally {
+                GridRouter.getInstance().release(remoteDriver);
+            }
+            throw e;
+        }
+        
+        // There is no local process to kill; ending the session frees the remote browser
+        setDriver(remoteDriver, remoteDriver::quit);
     }
     
     private static void initializeHtmlUnitDriver() {
-        System.out.println("Initializing HtmlUnitDriver");
+        logger.info("Initializing HtmlUnitDriver");
         
-        // Create a new HtmlUnit driver with JavaScript enabled
-        HtmlUnitDriver htmlUnitDriver = new HtmlUnitDriver(true);
+        // Create a new HtmlUnit driver with JavaScript enabled. When the shared
+        // cache is on, every driver in the JVM reuses the same response/script cache.
+        long launchStart = System.nanoTime();
+        HtmlUnitDriver htmlUnitDriver = sharedHtmlUnitCache
+                ? new SharedCacheHtmlUnitDriver()
+                : new HtmlUnitDriver(true);
+        recordStartupTime("htmlunit", launchStart);
         htmlUnitDriver.setJavascriptEnabled(true);
         
+        // Route traffic through the record/replay proxy when enabled
+        Proxy proxy = RecordReplayProxy.seleniumProxyIfEnabled();
+        if (proxy != null) {
+            htmlUnitDriver.setProxySettings(proxy);
+        }
+        
         // Set browser window size
         htmlUnitDriver.manage().window().setSize(new Dimension(windowWidth, windowHeight));
         
@@ -198,21 +337,216 @@ public class DriverManager {
         htmlUnitDriver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(60));
         htmlUnitDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(30));
         
-        System.out.println("HtmlUnitDriver successfully initialized");
-        driver.set(htmlUnitDriver);
+        logger.info("HtmlUnitDriver successfully initialized");
+        
+        // HtmlUnit runs in the calling thread, so the best we can do is interrupt it and close the client;
+        // quitDriver clears the interrupt again so it cannot leak into later waits on this thread
+        Thread owner = Thread.currentThread();
+        setDriver(htmlUnitDriver, () -> {
+            owner.interrupt();
+            htmlUnitDriver.quit();
+        });
+    }
+    
+    /**
+     * Starts a driver service, recording its process so it can be reaped if the session leaks
+     * 
+     * @return the service's processes
+     */
+    private static List<ProcessHandle> startTrackedService(DriverService service) {
+        try {
+            return ProcessLifecycleTracker.getInstance().startService(service);
+        } catch (IOException e) {
+            throw new RuntimeException("Error starting driver service", e);
+        }
+    }
+    
+    /**
+     * Starts a session on a running driver service; if the browser does not come up,
+     * the service is stopped and its processes are killed instead of being left behind
+     */
+    private static WebDriver startSession(DriverService service, List<ProcessHandle> processes,
+                                          Supplier<WebDriver> session) {
+        try {
+            return session.get();
+        } catch (RuntimeException e) {
+            service.stop();
+            ProcessLifecycleTracker.getInstance().kill(processes);
+            throw e;
+        }
+    }
+    
+    private static void setDriver(WebDriver created, Runnable killer) {
+        setDriver(created, killer, Collections.emptyList());
+    }
+    
+    /**
+     * Stores the driver for the current thread, wrapped in the command watchdog when enabled
+     * 
+     * @param created the newly started driver
+     * @param killer forcibly terminates the browser behind the driver
+     * @param processes the local processes behind the driver, if any
+     */
+    private static void setDriver(WebDriver created, Runnable killer, List<ProcessHandle> processes) {
+        ProcessLifecycleTracker tracker = ProcessLifecycleTracker.getInstance();
+        tracker.register(created, processes);
+        rawDriver.set(created);
+        // A wedged browser may ignore the service stop, so the watchdog also kills the process tree
+        Runnable trackedKiller = () -> {
+            killer.run();
+            tracker.kill(created);
+        };
+        driver.set(CommandWatchdog.isEnabled() ? CommandWatchdog.watch(created, trackedKiller) : created);
+    }
+
+    /**
+     * Ends the current scenario's use of the driver. Normally this quits the driver;
+     * in reuse mode the browser is kept warm and only its state is reset.
+     */
+    public static void releaseDriver() {
+        if (reuseDrivers && driver.get() != null) {
+            try {
+                driver.get().manage().deleteAllCookies();
+                driver.get().get("about:blank");
+                return;
+            } catch (Exception e) {
+                logger.warn("Error resetting reused WebDriver, quitting it instead: {}", e.getMessage());
+            }
+        }
+        quitDriver();
+    }
+    
+    /**
+     * Enables or disables keeping drivers alive across scenarios, e.g. while
+     * failed scenarios are re-executed at the end of a run
+     * 
+     * @param reuse true to keep drivers warm between scenarios
+     */
+    public static void setReuseDrivers(boolean reuse) {
+        reuseDrivers = reuse;
+    }
+    
+    public static boolean isReuseDrivers() {
+        return reuseDrivers;
     }
 
     public static void quitDriver() {
         if (driver.get() != null) {
+            boolean killedByWatchdog = CommandWatchdog.isWedged(driver.get());
             try {
-                System.out.println("Quitting WebDriver");
+                logger.info("Quitting WebDriver");
+                CommandWatchdog.unwatch(driver.get());
                 driver.get().quit();
-                driver.remove();
-                System.out.println("WebDriver successfully closed");
+                ProcessLifecycleTracker.getInstance().quitCompleted(rawDriver.get());
+                logger.info("WebDriver successfully closed");
             } catch (Exception e) {
-                System.err.println("Error quitting WebDriver: " + e.getMessage());
+                logger.error("Error quitting WebDriver: {}", e.getMessage());
+                // Do not leave the driver service and browser running
+                ProcessLifecycleTracker.getInstance().kill(rawDriver.get());
+            } finally {
+                // A failed or killed quit still frees the slot, so it is not counted against the endpoint forever
+                if (rawDriver.get() instanceof RemoteWebDriver && GridRouter.isEnabled()) {
+                    GridRouter.getInstance().release(rawDriver.get());
+                }
+                driver.remove();
+                rawDriver.remove();
+                if (killedByWatchdog) {
+                    // The HtmlUnit killer interrupts this thread, which may not have been blocked at the time
+                    Thread.interrupted();
+                }
             }
         }
+        BrowserProfileTemplates.releaseSessionProfile();
+    }
+    
+    /**
+     * Records how long a browser launch took and logs it
+     */
+    private static void recordStartupTime(String browser, long launchStartNanos) {
+        long elapsedMs = (System.nanoTime() - launchStartNanos) / 1_000_000;
+        synchronized (startupTimes) {
+            startupTimes.computeIfAbsent(browser, b -> new LongSummaryStatistics()).accept(elapsedMs);
+        }
+        logger.info("{} started in {} ms", browser, elapsedMs);
+    }
+    
+    /**
+     * Summary of browser startup times per browser type, e.g. for logging at the end of a run
+     * 
+     * @return human readable startup statistics
+     */
+    public static String getStartupStats() {
+        StringBuilder stats = new StringBuilder();
+        synchronized (startupTimes) {
+            startupTimes.forEach((browser, times) -> stats.append(browser)
+                    .append(": ").append(times.getCount()).append(" launches, avg ")
+                    .append(Math.round(times.getAverage())).append(" ms, min ")
+                    .append(times.getMin()).append(" ms, max ")
+                    .append(times.getMax()).append(" ms\n"));
+        }
+        return stats.toString();
+    }
+    
+    /**
+     * HtmlUnitDriver variant whose WebClient uses the process-wide {@link SharedHtmlUnitCache}
+     * instead of a fresh, empty cache per driver.
+     */
+    private static class SharedCacheHtmlUnitDriver extends HtmlUnitDriver {
+        SharedCacheHtmlUnitDriver() {
+            super(true);
+        }
+
+        @Override
+        protected WebClient modifyWebClient(WebClient client) {
+            client.setCache(SharedHtmlUnitCache.getInstance());
+            return client;
+        }
+    }
+
+    /**
+     * Get the browser type used by the current thread
+     * 
+     * @return browser name, e.g. chrome, firefox or htmlunit
+     */
+    public static String getBrowserType() {
+        String override = browserOverride.get();
+        return override != null ? override : browserType;
+    }
+    
+    /**
+     * Sets the browser for the current thread and the threads it creates from now on,
+     * overriding the configured browser (used by the matrix runner)
+     * 
+     * @param browser browser name, or null to go back to the configured browser
+     */
+    public static void setBrowserOverride(String browser) {
+        if (browser == null) {
+            browserOverride.remove();
+        } else {
+            browserOverride.set(browser);
+        }
+    }
+    
+    /**
+     * Looks up a configuration value, giving JVM system properties precedence
+     * over driver.properties.
+     *
+     * @param key property name
+     * @param defaultValue value used when the property is not set anywhere
+     * @return the configured value
+     */
+    public static String getConfig(String key, String defaultValue) {
+        return System.getProperty(key, driverProps.getProperty(key, defaultValue));
+    }
+
+    /**
+     * Get the current thread's driver without the watchdog decoration, e.g. for
+     * DevTools access that should not be timed as a driver command
+     * 
+     * @return the undecorated driver, or null if none is running
+     */
+    public static WebDriver getRawDriver() {
+        return rawDriver.get();
     }
     
     /**
@@ -222,7 +556,7 @@ public class DriverManager {
      * @return true if the driver can take screenshots, false otherwise
      */
     public static boolean canTakeScreenshots() {
-        return !(driver.get() instanceof HtmlUnitDriver);
+        return !(rawDriver.get() instanceof HtmlUnitDriver);
     }
     
     /**
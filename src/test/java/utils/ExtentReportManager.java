@@ -4,12 +4,16 @@ import com.aventstack.extentreports.ExtentReports;
 import com.aventstack.extentreports.reporter.ExtentSparkReporter;
 import com.aventstack.extentreports.reporter.configuration.Theme;
 import com.aventstack.extentreports.reporter.configuration.ViewName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
 public class ExtentReportManager {
+    private static final Logger logger = LoggerFactory.getLogger(ExtentReportManager.class);
+
     private static ExtentReports extent;
     private static final String REPORT_DIR = "target/extent-reports/";
     
@@ -58,7 +62,7 @@ public class ExtentReportManager {
         if (!directory.exists()) {
             boolean dirCreated = directory.mkdirs();
             if (!dirCreated) {
-                System.err.println("Failed to create report directory: " + REPORT_DIR);
+                logger.error("Failed to create report directory: {}", REPORT_DIR);
             }
         }
     }
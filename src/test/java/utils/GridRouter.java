@@ -0,0 +1,317 @@
+package utils;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.InvalidArgumentException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.http.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Routes RemoteWebDriver sessions across one or more Selenium Grid / standalone endpoints.
+ *
+ * Endpoints come from remote.urls (comma separated). A new session goes to the endpoint
+ * with the most free slots for the requested browser according to its /status, minus the
+ * sessions this JVM started there since that status was read; ties go to the endpoint
+ * with fewer of our open sessions. /status is read with its own short timeout, remote.status.timeout.ms,
+ * so a node that accepts connections but never answers cannot hold up routing. If an endpoint does
+ * not answer, or session creation fails for a reason on the endpoint's side (connection error,
+ * timeout, server error), the endpoint is put on a cooldown of remote.cooldown.ms and the next best
+ * endpoint is tried. Sessions refused because of the requested capabilities fail straight away.
+ *
+ * Each endpoint has one HTTP client that all its sessions share, so commands from
+ * different scenarios reuse the same keep-alive connections instead of opening a
+ * client (and connection pool) per session.
+ */
+public class GridRouter {
+    private static final Logger logger = LoggerFactory.getLogger(GridRouter.class);
+
+    private static GridRouter instance;
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final Map<WebDriver, Endpoint> sessions = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final long statusTtlMs;
+    private final long cooldownMs;
+
+    private GridRouter(List<URL> urls) {
+        this.statusTtlMs = Long.parseLong(DriverManager.getConfig("remote.status.ttl.ms", "1000"));
+        this.cooldownMs = Long.parseLong(DriverManager.getConfig("remote.cooldown.ms", "30000"));
+        Duration readTimeout = Duration.ofSeconds(Long.parseLong(DriverManager.getConfig("remote.readTimeout.s", "180")));
+        Duration statusTimeout = Duration.ofMillis(Long.parseLong(DriverManager.getConfig("remote.status.timeout.ms", "2000")));
+        HttpClient.Factory factory = HttpClient.Factory.createDefault();
+        for (URL url : urls) {
+            endpoints.add(new Endpoint(url,
+                    factory.createClient(ClientConfig.defaultConfig().baseUrl(url).readTimeout(readTimeout)),
+                    factory.createClient(ClientConfig.defaultConfig().baseUrl(url)
+                            .connectionTimeout(statusTimeout).readTimeout(statusTimeout))));
+        }
+    }
+
+    public static boolean isEnabled() {
+        return !DriverManager.getConfig("remote.urls", "").trim().isEmpty();
+    }
+
+    public static synchronized GridRouter getInstance() {
+        if (instance == null) {
+            List<URL> urls = new ArrayList<>();
+            for (String url : DriverManager.getConfig("remote.urls", "").split(",")) {
+                if (!url.trim().isEmpty()) {
+                    try {
+                        urls.add(new URL(url.trim()));
+                    } catch (MalformedURLException e) {
+                        throw new IllegalArgumentException("Invalid remote.urls entry: " + url, e);
+                    }
+                }
+            }
+            instance = new GridRouter(urls);
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::close));
+            logger.info("Remote mode with {} endpoint(s): {}", urls.size(), urls);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a session on the least loaded endpoint, failing over to the others
+     *
+     * @param capabilities the browser to start
+     * @return the remote driver
+     */
+    public RemoteWebDriver newSession(Capabilities capabilities) {
+        String browserName = capabilities.getBrowserName();
+        RuntimeException lastError = null;
+        for (Endpoint endpoint : rank(browserName)) {
+            SlotStatus slots = endpoint.slotsFor(browserName);
+            slots.creating.incrementAndGet();
+            try {
+                HttpCommandExecutor executor = new HttpCommandExecutor(Collections.emptyMap(),
+                        ClientConfig.defaultConfig().baseUrl(endpoint.url), config -> endpoint.sharedClient);
+                RemoteWebDriver remoteDriver = new RemoteWebDriver(executor, capabilities);
+                endpoint.open.incrementAndGet();
+                endpoint.started.incrementAndGet();
+                slots.startedSinceStatus.incrementAndGet();
+                sessions.put(remoteDriver, endpoint);
+                logger.info("Started {} session on {} ({} open there)", browserName, endpoint.url, endpoint.open.get());
+                return remoteDriver;
+            } catch (RuntimeException e) {
+                if (isCapabilityError(e)) {
+                    // The request is at fault, not the endpoint: every other endpoint would refuse it too
+                    throw e;
+                }
+                lastError = e;
+                endpoint.coolDownUntil = System.currentTimeMillis() + cooldownMs;
+                logger.warn("Session creation on {} failed, trying next endpoint: {}", endpoint.url, e.getMessage());
+            } finally {
+                slots.creating.decrementAndGet();
+            }
+        }
+        throw new IllegalStateException("No remote endpoint could start a " + browserName + " session", lastError);
+    }
+
+    /**
+     * Whether a session was refused because of the requested capabilities rather than a failing endpoint
+     */
+    private static boolean isCapabilityError(RuntimeException e) {
+        if (e instanceof InvalidArgumentException) {
+            return true;
+        }
+        String message = String.valueOf(e.getMessage()).toLowerCase(Locale.ROOT);
+        // Grid: "No nodes support the capabilities in the request"; drivers: "Unable to find a
+        // matching set of capabilities", "invalid argument: ..."
+        return e instanceof SessionNotCreatedException
+               && (message.contains("no nodes support the capabilities")
+                   || message.contains("matching set of capabilities")
+                   || message.contains("invalid argument"));
+    }
+
+    /**
+     * Forgets a session after it has been quit, freeing its slot for routing
+     */
+    public void release(WebDriver remoteDriver) {
+        Endpoint endpoint = sessions.remove(remoteDriver);
+        if (endpoint != null) {
+            endpoint.open.decrementAndGet();
+        }
+    }
+
+    public String getStats() {
+        return endpoints.stream()
+                .map(e -> e.url + ": " + e.started.get() + " session(s) started, " + e.open.get() + " open")
+                .collect(Collectors.joining("; "));
+    }
+
+    private List<Endpoint> rank(String browserName) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> available = new ArrayList<>();
+        List<Endpoint> coolingDown = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.coolDownUntil > now) {
+                coolingDown.add(endpoint);
+                continue;
+            }
+            if (endpoint.refreshStatus(browserName, now)) {
+                available.add(endpoint);
+            } else {
+                endpoint.coolDownUntil = now + cooldownMs;
+                coolingDown.add(endpoint);
+            }
+        }
+        available.sort(Comparator.comparingInt((Endpoint e) -> e.estimatedFreeSlots(browserName)).reversed()
+                .thenComparingInt(e -> e.open.get()));
+        // Endpoints on cooldown are the last resort, soonest recovered first
+        coolingDown.sort(Comparator.comparingLong(e -> e.coolDownUntil));
+        available.addAll(coolingDown);
+        return available;
+    }
+
+    private void close() {
+        endpoints.forEach(endpoint -> {
+            endpoint.sharedClient.delegate.close();
+            endpoint.statusClient.close();
+        });
+    }
+
+    private class Endpoint {
+        private final URL url;
+        private final SharedHttpClient sharedClient;
+        private final HttpClient statusClient;
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicInteger started = new AtomicInteger();
+        // Slots differ per browser, so each browser has its own cached status
+        private final Map<String, SlotStatus> slotsByBrowser = new ConcurrentHashMap<>();
+        private volatile long coolDownUntil;
+        private volatile boolean ready;
+
+        Endpoint(URL url, HttpClient client, HttpClient statusClient) {
+            this.url = url;
+            this.sharedClient = new SharedHttpClient(client);
+            this.statusClient = statusClient;
+        }
+
+        SlotStatus slotsFor(String browserName) {
+            return slotsByBrowser.computeIfAbsent(browserName == null ? "" : browserName.toLowerCase(Locale.ROOT),
+                                                  browser -> new SlotStatus());
+        }
+
+        int estimatedFreeSlots(String browserName) {
+            SlotStatus slots = slotsFor(browserName);
+            return slots.freeSlots - slots.creating.get() - slots.startedSinceStatus.get();
+        }
+
+        /**
+         * Reads readiness and free slots for the browser from /status, at most every remote.status.ttl.ms.
+         * While another caller is reading it, the cached values are used instead of waiting.
+         *
+         * @return whether the endpoint is ready
+         */
+        @SuppressWarnings("unchecked")
+        boolean refreshStatus(String browserName, long now) {
+            SlotStatus slots = slotsFor(browserName);
+            if (now - slots.statusCheckedAt < statusTtlMs || !slots.refreshing.compareAndSet(false, true)) {
+                // Not read yet for this browser: give the endpoint the benefit of the doubt
+                return ready || slots.statusCheckedAt == 0;
+            }
+            try {
+                slots.startedSinceStatus.set(0);
+                HttpResponse response = statusClient.execute(new HttpRequest(HttpMethod.GET, "/status"));
+                Map<String, Object> value = (Map<String, Object>) new Json()
+                        .toType(Contents.utf8String(response.getContent()), Json.MAP_TYPE);
+                Map<String, Object> status = (Map<String, Object>) value.get("value");
+                ready = response.getStatus() == 200 && status != null && Boolean.TRUE.equals(status.get("ready"));
+
+                int free = 0;
+                Object nodes = status == null ? null : status.get("nodes");
+                if (nodes instanceof List) {
+                    for (Map<String, Object> node : (List<Map<String, Object>>) nodes) {
+                        if (node.containsKey("availability") && !"UP".equals(node.get("availability"))) {
+                            continue;
+                        }
+                        for (Map<String, Object> slot : (List<Map<String, Object>>) node.getOrDefault("slots", List.of())) {
+                            Map<String, Object> stereotype = (Map<String, Object>) slot.get("stereotype");
+                            boolean matches = stereotype == null || browserName == null
+                                    || browserName.equalsIgnoreCase(String.valueOf(stereotype.get("browserName")));
+                            if (matches && slot.get("session") == null) {
+                                free++;
+                            }
+                        }
+                    }
+                } else if (ready) {
+                    // Standalone driver servers report readiness only: assume one free slot
+                    free = 1;
+                }
+                slots.freeSlots = free;
+            } catch (RuntimeException e) {
+                // Includes the status timeout; the caller puts the endpoint on cooldown
+                ready = false;
+                logger.warn("Status check of {} failed: {}", url, e.getMessage());
+            } finally {
+                slots.statusCheckedAt = now;
+                slots.refreshing.set(false);
+            }
+            return ready;
+        }
+    }
+
+    /**
+     * Free slots of one browser on an endpoint
+     */
+    private static class SlotStatus {
+        private final AtomicInteger creating = new AtomicInteger();
+        // Sessions started after the last /status, which the cached free slot count does not know about yet
+        private final AtomicInteger startedSinceStatus = new AtomicInteger();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long statusCheckedAt;
+        private volatile int freeSlots;
+    }
+
+    /**
+     * Shares one HTTP client between all sessions of an endpoint.
+     * HttpCommandExecutor closes its client when a session quits, so close() is a no-op here.
+     */
+    private static class SharedHttpClient implements HttpClient {
+        private final HttpClient delegate;
+
+        SharedHttpClient(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) {
+            return delegate.execute(request);
+        }
+
+        @Override
+        public WebSocket openSocket(HttpRequest request, WebSocket.Listener listener) {
+            return delegate.openSocket(request, listener);
+        }
+
+        @Override
+        public void close() {
+            // Shared with the other sessions of this endpoint
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Indexed on-disk archive of recorded HTTP responses used by {@link RecordReplayProxy}.
+ *
+ * The archive is a directory holding two files:
+ * - responses.dat: append-only response records (status, headers, body)
+ * - responses.idx: one line per record with offset, length and request key
+ *
+ * In replay mode the data file is memory-mapped once and responses are served as
+ * slices of the mapping, so no file I/O happens on the request path.
+ */
+public class HttpArchive {
+    private static final Logger logger = LoggerFactory.getLogger(HttpArchive.class);
+
+    private static final String DATA_FILE = "responses.dat";
+    private static final String INDEX_FILE = "responses.idx";
+
+    private final File directory;
+    private final Map<String, long[]> index = new HashMap<>();
+    private MappedByteBuffer mapping;
+    private DataOutputStream dataOut;
+    private Writer indexOut;
+    private long dataLength;
+
+    private HttpArchive(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens an archive for recording. New records are appended to any existing
+     * content; when a request is recorded twice the latest response wins on replay.
+     */
+    public static HttpArchive openForRecording(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create HTTP archive directory: " + directory);
+        }
+        HttpArchive archive = new HttpArchive(directory);
+        File dataFile = new File(directory, DATA_FILE);
+        archive.dataLength = dataFile.length();
+        archive.dataOut = new DataOutputStream(new FileOutputStream(dataFile, true));
+        archive.indexOut = Files.newBufferedWriter(new File(directory, INDEX_FILE).toPath(),
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        return archive;
+    }
+
+    /**
+     * Opens an existing archive for replay, loading the index into memory and
+     * memory-mapping the data file.
+     */
+    public static HttpArchive openForReplay(File directory) throws IOException {
+        HttpArchive archive = new HttpArchive(directory);
+        File dataFile = new File(directory, DATA_FILE);
+        File indexFile = new File(directory, INDEX_FILE);
+        if (!dataFile.exists() || !indexFile.exists()) {
+            throw new IOException("No HTTP archive found in " + directory.getAbsolutePath());
+        }
+        if (dataFile.length() > Integer.MAX_VALUE) {
+            throw new IOException("HTTP archive too large to map: " + dataFile.length() + " bytes");
+        }
+
+        for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t", 3);
+            if (parts.length == 3) {
+                archive.index.put(parts[2], new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1])});
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+             FileChannel channel = file.getChannel()) {
+            archive.mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return archive;
+    }
+
+    /**
+     * Builds the lookup key for a request. Request bodies are folded in as a hash
+     * so that different form submissions to the same URL are told apart.
+     */
+    public static String key(String method, String url, byte[] body) {
+        String key = method.toUpperCase() + " " + url;
+        if (body != null && body.length > 0) {
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            key += " #" + Long.toHexString(crc.getValue());
+        }
+        return key;
+    }
+
+    /**
+     * Appends a response record and its index entry.
+     */
+    public synchronized void record(String key, int status, Map<String, List<String>> headers, byte[] body)
+            throws IOException {
+        StringBuilder headerBlock = new StringBuilder();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                headerBlock.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        byte[] headerBytes = headerBlock.toString().getBytes(StandardCharsets.UTF_8);
+
+        long offset = dataLength;
+        dataOut.writeInt(status);
+        dataOut.writeInt(headerBytes.length);
+        dataOut.write(headerBytes);
+        dataOut.writeInt(body.length);
+        dataOut.write(body);
+        dataOut.flush();
+        int recordLength = 12 + headerBytes.length + body.length;
+        dataLength += recordLength;
+
+        indexOut.write(offset + "\t" + recordLength + "\t" + key + "\n");
+        indexOut.flush();
+    }
+
+    /**
+     * Looks up a recorded response.
+     *
+     * @return the response, or null if the request was never recorded
+     */
+    public Response lookup(String key) {
+        long[] location = index.get(key);
+        if (location == null || mapping == null) {
+            return null;
+        }
+        ByteBuffer record = mapping.duplicate();
+        record.position((int) location[0]);
+        record.limit((int) (location[0] + location[1]));
+        record = record.slice();
+
+        int status = record.getInt();
+        byte[] headerBytes = new byte[record.getInt()];
+        record.get(headerBytes);
+        int bodyLength = record.getInt();
+        ByteBuffer body = record.slice();
+        body.limit(bodyLength);
+
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String line : new String(headerBytes, StandardCharsets.UTF_8).split("\r\n")) {
+            int colon = line.indexOf(": ");
+            if (colon > 0) {
+                headers.computeIfAbsent(line.substring(0, colon), k -> new ArrayList<>())
+                       .add(line.substring(colon + 2));
+            }
+        }
+        return new Response(status, headers, body);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized void close() {
+        try {
+            if (dataOut != null) {
+                dataOut.close();
+            }
+            if (indexOut != null) {
+                indexOut.close();
+            }
+        } catch (IOException e) {
+            logger.error("Error closing HTTP archive: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A recorded response. The body is a read-only view into the mapped archive.
+     */
+    public static class Response {
+        public final int status;
+        public final Map<String, List<String>> headers;
+        public final ByteBuffer body;
+
+        Response(int status, Map<String, List<String>> headers, ByteBuffer body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,665 @@
+package utils;
+
+import io.cucumber.cucumberexpressions.Expression;
+import io.cucumber.cucumberexpressions.ExpressionFactory;
+import io.cucumber.cucumberexpressions.ParameterTypeRegistry;
+import io.cucumber.tagexpressions.TagExpressionParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test impact analysis: selects only the scenarios affected by a change.
+ *
+ * Builds a map from glue (step definition methods and hooks) to the scenarios that
+ * bind to them by parsing the feature files and the glue sources. The map is cached
+ * in impact.cache.file and only the feature/glue files whose content changed since
+ * the last run are re-parsed.
+ *
+ * Given a git diff, changed lines are mapped to scenarios (feature changes) and to
+ * glue methods (step definition/hook changes). Glue that calls other glue directly, e.g.
+ * navigationSteps.i_enter_credentials(...) on an injected step class, is impacted by
+ * changes to the code it calls. The impacted scenarios are written
+ * to impact.output in the same format as the rerun file:
+ *   mvn test -Dcucumber.features="$(paste -sd, target/impact/selected-scenarios.txt)"
+ * Changes to any other source or build file select every scenario. Untracked files
+ * count as changed on every line; a new glue file selects every scenario, since its
+ * steps may bind anywhere.
+ *
+ * Usage: ImpactAnalyzer [git-base-ref]   (defaults to HEAD, i.e. uncommitted changes)
+ */
+public class ImpactAnalyzer {
+    private static final Logger logger = LoggerFactory.getLogger(ImpactAnalyzer.class);
+
+    private static final Path FEATURE_ROOT = Paths.get("src/test/resources/features");
+    private static final List<Path> GLUE_ROOTS = Arrays.asList(
+            Paths.get("src/test/java/stepdefinitions"), Paths.get("src/test/java/hooks"));
+    private static final Path RESOURCE_ROOT = Paths.get("src/test/resources");
+    // Bumped whenever the cache format changes; older caches are rebuilt
+    private static final String CACHE_VERSION = "2";
+
+    private static final Pattern STEP_LINE = Pattern.compile("^(Given|When|Then|And|But|\\*)\\s+(.*)$");
+    private static final Pattern SCENARIO_LINE = Pattern.compile("^(Scenario|Scenario Outline|Scenario Template|Example):.*$");
+    private static final Pattern STEP_ANNOTATION = Pattern.compile("^@(Given|When|Then|And|But)\\(\"((?:[^\"\\\\]|\\\\.)*)\"\\)");
+    private static final Pattern HOOK_ANNOTATION = Pattern.compile("^@(Before|After|BeforeStep|AfterStep|BeforeAll|AfterAll)\\b(.*)$");
+    private static final Pattern METHOD_DECLARATION = Pattern.compile("\\b(\\w+)\\s*\\([^;]*$");
+    // Fields and variables with a class type, e.g. "private final WebsiteNavigationSteps navigationSteps;"
+    private static final Pattern TYPED_DECLARATION = Pattern.compile(
+            "^(?:(?:private|protected|public|static|final)\\s+)*([A-Z]\\w*)\\s+(\\w+)\\s*[;=]");
+    private static final Pattern MEMBER_CALL = Pattern.compile("\\b(\\w+)\\.(\\w+)\\s*\\(");
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,(\\d+))? @@.*");
+
+    private final Map<String, String> fileHashes = new HashMap<>();
+    private final Map<String, List<ScenarioInfo>> scenariosByFile = new TreeMap<>();
+    private final Map<String, List<GlueInfo>> glueByFile = new TreeMap<>();
+    private final Map<String, Set<String>> bindings = new TreeMap<>();
+    private final ExpressionFactory expressionFactory = new ExpressionFactory(new ParameterTypeRegistry(Locale.ENGLISH));
+
+    public static void main(String[] args) {
+        long start = System.currentTimeMillis();
+        String baseRef = args.length > 0 ? args[0] : "HEAD";
+        Path cacheFile = Paths.get(DriverManager.getConfig("impact.cache.file", "target/impact/impact-cache.tsv"));
+        Path outputFile = Paths.get(DriverManager.getConfig("impact.output", "target/impact/selected-scenarios.txt"));
+
+        try {
+            ImpactAnalyzer analyzer = new ImpactAnalyzer();
+            analyzer.load(cacheFile);
+            int reparsed = analyzer.refresh();
+            analyzer.save(cacheFile);
+
+            Map<String, Set<Integer>> changes = gitDiff(baseRef);
+            Set<String> untracked = gitUntracked();
+            for (String file : untracked) {
+                changes.put(file, allLines(Paths.get(file)));
+            }
+            Set<String> selected = analyzer.select(changes, untracked);
+            Files.createDirectories(outputFile.toAbsolutePath().getParent());
+            Files.write(outputFile, selected, StandardCharsets.UTF_8);
+
+            logger.info("Impact analysis against {}: {} of {} scenario(s) selected ({} file(s) re-parsed, {} ms)",
+                        baseRef, selected.size(), analyzer.allScenarios().size(), reparsed,
+                        System.currentTimeMillis() - start);
+            selected.forEach(id -> logger.info("  {}", id));
+            logger.info("Selection written to: {}", outputFile.toAbsolutePath());
+        } catch (Exception e) {
+            logger.error("Error running impact analysis: {}", e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Re-parses every feature and glue file whose content changed since the cached
+     * map was written, and drops entries for files that no longer exist.
+     *
+     * @return number of files that were re-parsed
+     */
+    public int refresh() throws IOException {
+        Set<String> seen = new LinkedHashSet<>();
+        Set<String> changedFeatures = new LinkedHashSet<>();
+        Set<String> changedGlue = new LinkedHashSet<>();
+
+        for (Path feature : listFiles(FEATURE_ROOT, ".feature")) {
+            String key = feature.toString();
+            seen.add(key);
+            String hash = hash(feature);
+            if (!hash.equals(fileHashes.get(key)) || !scenariosByFile.containsKey(key)) {
+                scenariosByFile.put(key, parseFeature(feature));
+                fileHashes.put(key, hash);
+                changedFeatures.add(key);
+            }
+        }
+        for (Path root : GLUE_ROOTS) {
+            for (Path glue : listFiles(root, ".java")) {
+                String key = glue.toString();
+                seen.add(key);
+                String hash = hash(glue);
+                if (!hash.equals(fileHashes.get(key)) || !glueByFile.containsKey(key)) {
+                    glueByFile.put(key, parseGlue(glue));
+                    fileHashes.put(key, hash);
+                    changedGlue.add(key);
+                }
+            }
+        }
+
+        scenariosByFile.keySet().retainAll(seen);
+        glueByFile.keySet().retainAll(seen);
+        fileHashes.keySet().retainAll(seen);
+        updateBindings(changedFeatures, changedGlue);
+        return changedFeatures.size() + changedGlue.size();
+    }
+
+    /**
+     * Brings the persisted glue-to-scenario bindings up to date: glue from changed
+     * glue files is matched against every scenario, scenarios from changed feature
+     * files against every other glue entry. Everything else is kept as cached.
+     */
+    private void updateBindings(Set<String> changedFeatures, Set<String> changedGlue) {
+        Set<String> scenarioIds = allScenarios();
+        Set<String> glueIds = new TreeSet<>();
+        glueByFile.values().forEach(list -> list.forEach(g -> glueIds.add(g.id)));
+        bindings.keySet().retainAll(glueIds);
+        bindings.values().forEach(bound -> bound.retainAll(scenarioIds));
+
+        List<ScenarioInfo> changedScenarios = new ArrayList<>();
+        changedFeatures.forEach(file -> changedScenarios.addAll(scenariosByFile.get(file)));
+        List<ScenarioInfo> scenarios = scenariosByFile.values().stream()
+                .flatMap(List::stream).collect(Collectors.toList());
+
+        glueByFile.forEach((file, glueList) -> {
+            boolean glueChanged = changedGlue.contains(file);
+            for (GlueInfo glue : glueList) {
+                Set<String> bound = bindings.computeIfAbsent(glue.id, id -> new TreeSet<>());
+                if (glueChanged) {
+                    bound.clear();
+                }
+                for (ScenarioInfo scenario : glueChanged ? scenarios : changedScenarios) {
+                    if (bindsTo(glue, scenario)) {
+                        bound.add(scenario.id);
+                    } else {
+                        bound.remove(scenario.id);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Scenarios impacted by the given changed lines per file
+     *
+     * @param changes   changed line numbers (new side of the diff) keyed by repository-relative path
+     * @param untracked files among the changes that git does not track yet
+     * @return ids of the impacted scenarios
+     */
+    public Set<String> select(Map<String, Set<Integer>> changes, Set<String> untracked) {
+        Set<String> selected = new TreeSet<>();
+        Set<String> impactedGlue = new TreeSet<>();
+        Set<String> changedGlueClasses = new TreeSet<>();
+
+        for (Map.Entry<String, Set<Integer>> change : changes.entrySet()) {
+            String file = Paths.get(change.getKey()).toString();
+            Set<Integer> lines = change.getValue();
+
+            if (scenariosByFile.containsKey(file)) {
+                List<ScenarioInfo> scenarios = scenariosByFile.get(file);
+                int firstScenarioLine = scenarios.isEmpty() ? Integer.MAX_VALUE : scenarios.get(0).startLine;
+                boolean headerChanged = lines.stream().anyMatch(line -> line < firstScenarioLine);
+                for (ScenarioInfo scenario : scenarios) {
+                    if (headerChanged || overlaps(lines, scenario.startLine, scenario.endLine)) {
+                        selected.add(scenario.id);
+                    }
+                }
+            } else if (glueByFile.containsKey(file) && untracked.contains(change.getKey())) {
+                // New glue: its steps and hooks are not bound to anything yet, so everything may be affected
+                return allScenarios();
+            } else if (glueByFile.containsKey(file)) {
+                List<GlueInfo> glue = glueByFile.get(file);
+                boolean outsideGlue = lines.stream().anyMatch(
+                        line -> glue.stream().noneMatch(g -> line >= g.startLine && line <= g.endLine));
+                if (outsideGlue) {
+                    changedGlueClasses.add(Paths.get(file).getFileName().toString().replace(".java", ""));
+                }
+                for (GlueInfo entry : glue) {
+                    // Changes to shared code in a glue class (fields, constructor, helpers) affect all its glue
+                    if (outsideGlue || overlaps(lines, entry.startLine, entry.endLine)) {
+                        impactedGlue.add(entry.id);
+                    }
+                }
+            } else if (isRelevant(file)) {
+                // Framework, config or build change: everything may be affected
+                return allScenarios();
+            }
+        }
+
+        // Glue calling impacted glue (or any changed code of its class) is impacted too, transitively
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (List<GlueInfo> glueList : glueByFile.values()) {
+                for (GlueInfo glue : glueList) {
+                    boolean callsImpacted = glue.calls.stream().anyMatch(call -> impactedGlue.contains(call)
+                            || changedGlueClasses.contains(call.substring(0, call.indexOf('.'))));
+                    if (callsImpacted && !impactedGlue.contains(glue.id)) {
+                        impactedGlue.add(glue.id);
+                        added = true;
+                    }
+                }
+            }
+        }
+        impactedGlue.forEach(id -> selected.addAll(bindings.getOrDefault(id, Collections.emptySet())));
+        return selected;
+    }
+
+    /**
+     * Map from glue id (Class.method) to the scenarios that bind to it
+     */
+    public Map<String, Set<String>> getBindings() {
+        return Collections.unmodifiableMap(bindings);
+    }
+
+    public Set<String> allScenarios() {
+        return scenariosByFile.values().stream().flatMap(List::stream)
+                .map(s -> s.id).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private boolean bindsTo(GlueInfo glue, ScenarioInfo scenario) {
+        if (glue.hook) {
+            return glue.expression.isEmpty()
+                   || TagExpressionParser.parse(glue.expression).evaluate(scenario.tags);
+        }
+        Expression expression;
+        try {
+            expression = expressionFactory.createExpression(glue.expression);
+        } catch (RuntimeException e) {
+            // e.g. a custom parameter type we cannot resolve from source: assume it binds
+            return true;
+        }
+        return scenario.steps.stream().anyMatch(step -> expression.match(step) != null);
+    }
+
+    private static boolean overlaps(Set<Integer> lines, int start, int end) {
+        return lines.stream().anyMatch(line -> line >= start && line <= end);
+    }
+
+    private static boolean isRelevant(String file) {
+        String normalized = file.replace('\\', '/');
+        return !(normalized.startsWith(".github/")
+                 || normalized.endsWith(".md")
+                 || normalized.endsWith(".png")
+                 || normalized.endsWith(".txt")
+                 || normalized.equals(".gitignore"));
+    }
+
+    private List<ScenarioInfo> parseFeature(Path feature) throws IOException {
+        List<String> lines = Files.readAllLines(feature, StandardCharsets.UTF_8);
+        String id = RESOURCE_ROOT.relativize(feature).toString().replace('\\', '/');
+        List<ScenarioInfo> scenarios = new ArrayList<>();
+        List<String> featureTags = new ArrayList<>();
+        List<String> backgroundSteps = new ArrayList<>();
+        List<String> pendingTags = new ArrayList<>();
+        int pendingTagsLine = 0;
+        ScenarioInfo current = null;
+        boolean inBackground = false;
+        List<String> examplesHeader = null;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            int lineNumber = i + 1;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("@")) {
+                if (pendingTags.isEmpty()) {
+                    pendingTagsLine = lineNumber;
+                }
+                for (String tag : line.split("\\s+")) {
+                    if (tag.startsWith("#")) {
+                        break;
+                    }
+                    pendingTags.add(tag);
+                }
+                continue;
+            }
+            if (line.startsWith("Feature:")) {
+                featureTags.addAll(pendingTags);
+                pendingTags.clear();
+            } else if (line.startsWith("Background:")) {
+                inBackground = true;
+            } else if (SCENARIO_LINE.matcher(line).matches()) {
+                inBackground = false;
+                examplesHeader = null;
+                // A scenario's range starts at its tags so that tag edits select it
+                int rangeStart = pendingTags.isEmpty() ? lineNumber : pendingTagsLine;
+                if (current != null) {
+                    current.endLine = rangeStart - 1;
+                }
+                current = new ScenarioInfo("classpath:" + id + ":" + lineNumber, rangeStart);
+                current.tags.addAll(featureTags);
+                current.tags.addAll(pendingTags);
+                current.steps.addAll(backgroundSteps);
+                current.outline = line.startsWith("Scenario Outline") || line.startsWith("Scenario Template");
+                scenarios.add(current);
+                pendingTags.clear();
+            } else if (line.startsWith("Examples:") || line.startsWith("Scenarios:")) {
+                if (current != null) {
+                    current.tags.addAll(pendingTags);
+                }
+                pendingTags.clear();
+                examplesHeader = Collections.emptyList();
+            } else if (line.startsWith("|") && examplesHeader != null && current != null) {
+                List<String> cells = Arrays.stream(line.substring(1, line.lastIndexOf('|')).split("\\|"))
+                        .map(String::trim).collect(Collectors.toList());
+                if (examplesHeader.isEmpty()) {
+                    examplesHeader = cells;
+                } else if (!current.exampleRowApplied) {
+                    // One example row is enough to resolve the bindings of an outline
+                    current.applyExampleRow(examplesHeader, cells);
+                }
+            } else {
+                Matcher step = STEP_LINE.matcher(line);
+                if (step.matches()) {
+                    if (inBackground) {
+                        backgroundSteps.add(step.group(2));
+                    } else if (current != null) {
+                        current.steps.add(step.group(2));
+                    }
+                }
+            }
+        }
+        if (current != null) {
+            current.endLine = lines.size();
+        }
+        return scenarios;
+    }
+
+    private List<GlueInfo> parseGlue(Path source) throws IOException {
+        List<String> lines = Files.readAllLines(source, StandardCharsets.UTF_8);
+        String className = source.getFileName().toString().replace(".java", "");
+        List<GlueInfo> glue = new ArrayList<>();
+
+        // Types of the fields (and locals) that calls may go through, e.g. injected step classes
+        Map<String, String> typesByName = new HashMap<>();
+        for (String line : lines) {
+            Matcher declaration = TYPED_DECLARATION.matcher(line.trim());
+            if (declaration.find()) {
+                typesByName.put(declaration.group(2), declaration.group(1));
+            }
+        }
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            Matcher step = STEP_ANNOTATION.matcher(line);
+            Matcher hook = HOOK_ANNOTATION.matcher(line);
+            GlueInfo entry;
+            if (step.find()) {
+                entry = new GlueInfo(false, step.group(2).replace("\\\"", "\"").replace("\\\\", "\\"));
+            } else if (hook.find()) {
+                Matcher tags = Pattern.compile("\"([^\"]*)\"").matcher(hook.group(2));
+                boolean allScenarios = hook.group(1).endsWith("All");
+                entry = new GlueInfo(true, !allScenarios && tags.find() ? tags.group(1) : "");
+            } else {
+                continue;
+            }
+            entry.startLine = i + 1;
+
+            // Find the annotated method and the end of its body by counting braces
+            int depth = 0;
+            boolean bodyStarted = false;
+            for (int j = i + 1; j < lines.size(); j++) {
+                String code = lines.get(j).replaceAll("\"(?:[^\"\\\\]|\\\\.)*\"", "\"\"").replaceAll("//.*$", "");
+                if (entry.id == null) {
+                    Matcher method = METHOD_DECLARATION.matcher(code);
+                    if (!code.trim().startsWith("@") && method.find()) {
+                        entry.id = className + "." + method.group(1);
+                    }
+                }
+                Matcher call = MEMBER_CALL.matcher(code);
+                while (call.find()) {
+                    String type = typesByName.get(call.group(1));
+                    if (type != null && !type.equals(className)) {
+                        entry.calls.add(type + "." + call.group(2));
+                    }
+                }
+                for (char c : code.toCharArray()) {
+                    if (c == '{') {
+                        depth++;
+                        bodyStarted = true;
+                    } else if (c == '}') {
+                        depth--;
+                    }
+                }
+                if (bodyStarted && depth <= 0) {
+                    entry.endLine = j + 1;
+                    i = j;
+                    break;
+                }
+            }
+            if (entry.id != null) {
+                glue.add(entry);
+            }
+        }
+        return glue;
+    }
+
+    /**
+     * Changed lines per file according to git, including uncommitted changes
+     */
+    private static Map<String, Set<Integer>> gitDiff(String baseRef) throws IOException, InterruptedException {
+        Process git = new ProcessBuilder("git", "diff", "--unified=0", "--no-color", baseRef)
+                .redirectErrorStream(true).start();
+        Map<String, Set<Integer>> changes = new LinkedHashMap<>();
+        String currentFile = null;
+        String previousFile = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("--- ")) {
+                    previousFile = line.startsWith("--- a/") ? line.substring(6) : null;
+                } else if (line.startsWith("+++ ")) {
+                    // A deleted file shows up as +++ /dev/null; fall back to its old path
+                    currentFile = line.startsWith("+++ b/") ? line.substring(6) : previousFile;
+                    if (currentFile != null) {
+                        changes.computeIfAbsent(currentFile, f -> new TreeSet<>());
+                    }
+                } else if (currentFile != null) {
+                    Matcher hunk = HUNK_HEADER.matcher(line);
+                    if (hunk.matches()) {
+                        int start = Integer.parseInt(hunk.group(1));
+                        int count = hunk.group(2) == null ? 1 : Integer.parseInt(hunk.group(2));
+                        Set<Integer> lines = changes.get(currentFile);
+                        // A pure deletion (count 0) touches the lines around the removal point
+                        for (int n = Math.max(1, start); n < start + Math.max(count, 1); n++) {
+                            lines.add(n);
+                        }
+                    }
+                }
+            }
+        }
+        if (git.waitFor() != 0) {
+            throw new IOException("git diff against " + baseRef + " failed");
+        }
+        return changes;
+    }
+
+    /**
+     * Files that are neither tracked nor ignored by git, e.g. a new feature file that was not added yet
+     */
+    private static Set<String> gitUntracked() throws IOException, InterruptedException {
+        Process git = new ProcessBuilder("git", "ls-files", "--others", "--exclude-standard")
+                .redirectErrorStream(true).start();
+        Set<String> files = new TreeSet<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    files.add(line);
+                }
+            }
+        }
+        if (git.waitFor() != 0) {
+            throw new IOException("git ls-files failed");
+        }
+        return files;
+    }
+
+    private static Set<Integer> allLines(Path file) throws IOException {
+        Set<Integer> lines = new TreeSet<>();
+        long count;
+        try (Stream<String> content = Files.lines(file, StandardCharsets.ISO_8859_1)) {
+            count = content.count();
+        }
+        for (int n = 1; n <= Math.max(count, 1); n++) {
+            lines.add(n);
+        }
+        return lines;
+    }
+
+    private void load(Path cacheFile) throws IOException {
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        List<String> cached = Files.readAllLines(cacheFile, StandardCharsets.UTF_8);
+        if (cached.isEmpty() || !cached.get(0).equals("V\t" + CACHE_VERSION)) {
+            logger.info("Impact cache {} has an older format and is rebuilt", cacheFile);
+            return;
+        }
+        Map<String, ScenarioInfo> scenariosById = new HashMap<>();
+        Map<String, GlueInfo> glueById = new HashMap<>();
+        for (String line : cached) {
+            String[] f = line.split("\t", -1);
+            switch (f[0]) {
+                case "H":
+                    fileHashes.put(f[1], f[2]);
+                    scenariosByFile.putIfAbsent(f[1], new ArrayList<>());
+                    break;
+                case "S":
+                    ScenarioInfo scenario = new ScenarioInfo(f[2], Integer.parseInt(f[3]));
+                    scenario.endLine = Integer.parseInt(f[4]);
+                    if (!f[5].isEmpty()) {
+                        scenario.tags.addAll(Arrays.asList(f[5].split(",")));
+                    }
+                    scenariosByFile.computeIfAbsent(f[1], k -> new ArrayList<>()).add(scenario);
+                    scenariosById.put(scenario.id, scenario);
+                    break;
+                case "T":
+                    scenariosById.get(f[1]).steps.add(f[2]);
+                    break;
+                case "B":
+                    bindings.computeIfAbsent(f[1], k -> new TreeSet<>()).add(f[2]);
+                    break;
+                case "G":
+                    GlueInfo glue = new GlueInfo("hook".equals(f[3]), f[6]);
+                    glue.id = f[2];
+                    glue.startLine = Integer.parseInt(f[4]);
+                    glue.endLine = Integer.parseInt(f[5]);
+                    glueByFile.computeIfAbsent(f[1], k -> new ArrayList<>()).add(glue);
+                    glueById.put(glue.id, glue);
+                    break;
+                case "C":
+                    glueById.get(f[1]).calls.add(f[2]);
+                    break;
+                default:
+                    break;
+            }
+        }
+        // Hash entries were registered as features above; move glue files to the glue map
+        scenariosByFile.keySet().removeIf(file -> file.endsWith(".java"));
+        fileHashes.keySet().stream().filter(file -> file.endsWith(".java"))
+                .forEach(file -> glueByFile.putIfAbsent(file, new ArrayList<>()));
+    }
+
+    private void save(Path cacheFile) throws IOException {
+        List<String> out = new ArrayList<>();
+        out.add("V\t" + CACHE_VERSION);
+        fileHashes.forEach((file, hash) -> out.add("H\t" + file + "\t" + hash));
+        scenariosByFile.forEach((file, scenarios) -> {
+            for (ScenarioInfo s : scenarios) {
+                out.add("S\t" + file + "\t" + s.id + "\t" + s.startLine + "\t" + s.endLine + "\t" + String.join(",", s.tags));
+                s.steps.forEach(step -> out.add("T\t" + s.id + "\t" + step));
+            }
+        });
+        glueByFile.forEach((file, glue) -> {
+            for (GlueInfo g : glue) {
+                out.add("G\t" + file + "\t" + g.id + "\t" + (g.hook ? "hook" : "step") + "\t"
+                        + g.startLine + "\t" + g.endLine + "\t" + g.expression);
+                g.calls.forEach(call -> out.add("C\t" + g.id + "\t" + call));
+            }
+        });
+        bindings.forEach((glue, scenarios) -> scenarios.forEach(id -> out.add("B\t" + glue + "\t" + id)));
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        Files.write(cacheFile, out, StandardCharsets.UTF_8);
+    }
+
+    private static List<Path> listFiles(Path root, String extension) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> p.toString().endsWith(extension)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(file));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class ScenarioInfo {
+        private final String id;
+        private final int startLine;
+        private int endLine;
+        private boolean outline;
+        private boolean exampleRowApplied;
+        private final List<String> tags = new ArrayList<>();
+        private final List<String> steps = new ArrayList<>();
+
+        ScenarioInfo(String id, int startLine) {
+            this.id = id;
+            this.startLine = startLine;
+        }
+
+        void applyExampleRow(List<String> header, List<String> row) {
+            if (!outline) {
+                return;
+            }
+            for (int i = 0; i < steps.size(); i++) {
+                String step = steps.get(i);
+                for (int c = 0; c < header.size() && c < row.size(); c++) {
+                    step = step.replace("<" + header.get(c) + ">", row.get(c));
+                }
+                steps.set(i, step);
+            }
+            exampleRowApplied = true;
+        }
+    }
+
+    private static class GlueInfo {
+        private final boolean hook;
+        // Step expression for step definitions, tag expression for hooks
+        private final String expression;
+        private String id;
+        private int startLine;
+        private int endLine;
+        // Methods of other glue classes called from this one, as Class.method
+        private final Set<String> calls = new TreeSet<>();
+
+        GlueInfo(boolean hook, String expression) {
+            this.hook = hook;
+            this.expression = expression;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package utils;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestStepFinished;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cucumber plugin that collects throughput and step latencies during a load run.
+ *
+ * Every virtual user runs its own Cucumber runtime with its own plugin instance, so
+ * the samples are kept in a static collector shared by all of them. Samples are
+ * bucketed into fixed intervals (by the time the step finished) so that both
+ * throughput and the latency percentiles can be reported over time.
+ */
+public class LoadMetricsPlugin implements ConcurrentEventListener {
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+
+    private static final ConcurrentSkipListMap<Long, Interval> intervals = new ConcurrentSkipListMap<>();
+    private static volatile Instant start = Instant.now();
+    private static volatile long intervalMs = 10000;
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestStepFinished.class, LoadMetricsPlugin::onStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, LoadMetricsPlugin::onCaseFinished);
+    }
+
+    /**
+     * Clears all samples and starts the clock for a new load run
+     *
+     * @param reportIntervalMs length of each reporting interval
+     */
+    public static void reset(long reportIntervalMs) {
+        intervals.clear();
+        intervalMs = reportIntervalMs;
+        start = Instant.now();
+    }
+
+    public static long getIntervalMs() {
+        return intervalMs;
+    }
+
+    private static void onStepFinished(TestStepFinished event) {
+        String name;
+        if (event.getTestStep() instanceof PickleStepTestStep) {
+            name = ((PickleStepTestStep) event.getTestStep()).getStep().getText();
+        } else if (event.getTestStep() instanceof HookTestStep) {
+            String location = event.getTestStep().getCodeLocation();
+            name = "@" + ((HookTestStep) event.getTestStep()).getHookType() + " "
+                   + location.substring(0, location.indexOf('(') < 0 ? location.length() : location.indexOf('('));
+        } else {
+            return;
+        }
+        intervalAt(event.getInstant()).samplesFor(name).add(event.getResult().getDuration().toNanos());
+    }
+
+    private static void onCaseFinished(TestCaseFinished event) {
+        Interval interval = intervalAt(event.getInstant());
+        if (event.getResult().getStatus() == Status.PASSED) {
+            interval.passed.incrementAndGet();
+        } else {
+            interval.failed.incrementAndGet();
+        }
+    }
+
+    private static Interval intervalAt(Instant instant) {
+        long index = Math.max(0, Duration.between(start, instant).toMillis() / intervalMs);
+        return intervals.computeIfAbsent(index, i -> new Interval());
+    }
+
+    /**
+     * One-line-per-step summary of a finished interval, e.g. for logging while the run progresses
+     *
+     * @param index interval number, counted from the start of the run
+     */
+    public static String formatInterval(long index) {
+        Interval interval = intervals.get(index);
+        long seconds = index * intervalMs / 1000;
+        if (interval == null) {
+            return String.format(Locale.ROOT, "[t=%ds] no scenarios finished", seconds);
+        }
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                "[t=%ds] %d scenario(s) (%.2f/s), %d failed, %d open session(s)",
+                seconds, interval.passed.get() + interval.failed.get(),
+                (interval.passed.get() + interval.failed.get()) * 1000.0 / intervalMs, interval.failed.get(),
+                ProcessLifecycleTracker.getInstance().getOpenSessionCount()));
+        interval.snapshot().forEach((step, samples) -> text.append("\n  ").append(formatStep(step, samples.sorted())));
+        return text.toString();
+    }
+
+    /**
+     * Writes the per-interval timeline and an overall and steady-state summary as CSV files
+     *
+     * @param dir                 report directory
+     * @param steadyStateStartMs  offset from the start of the run where the steady state begins
+     * @param steadyStateEndMs    offset from the start of the run where the steady state ends
+     * @return the human-readable summary of the run
+     */
+    public static String writeReport(Path dir, long steadyStateStartMs, long steadyStateEndMs) throws IOException {
+        Files.createDirectories(dir);
+
+        List<String> timeline = new ArrayList<>();
+        timeline.add("interval_start_s,step,count,p50_ms,p90_ms,p95_ms,p99_ms,max_ms,scenarios_per_s,failed");
+        Interval overall = new Interval();
+        Interval steadyState = new Interval();
+        for (Map.Entry<Long, Interval> entry : intervals.entrySet()) {
+            long offsetMs = entry.getKey() * intervalMs;
+            Interval interval = entry.getValue();
+            double throughput = (interval.passed.get() + interval.failed.get()) * 1000.0 / intervalMs;
+            interval.snapshot().forEach((step, samples) -> timeline.add(csvRow(
+                    offsetMs / 1000 + "," + csv(step), samples.sorted(), throughput, interval.failed.get())));
+
+            overall.merge(interval);
+            if (offsetMs >= steadyStateStartMs && offsetMs + intervalMs <= steadyStateEndMs) {
+                steadyState.merge(interval);
+            }
+        }
+        Files.write(dir.resolve("load-timeline.csv"), timeline, StandardCharsets.UTF_8);
+
+        long steadyStateMs = Math.max(intervalMs, steadyStateEndMs - steadyStateStartMs);
+        long runMs = Math.max(intervalMs, intervals.isEmpty() ? 0 : (intervals.lastKey() + 1) * intervalMs);
+        List<String> summary = new ArrayList<>();
+        summary.add("window,step,count,p50_ms,p90_ms,p95_ms,p99_ms,max_ms,scenarios_per_s,failed");
+        StringBuilder text = new StringBuilder();
+        Map<String, Interval> windows = new LinkedHashMap<>();
+        windows.put("overall", overall);
+        windows.put("steady-state", steadyState);
+        for (Map.Entry<String, Interval> window : windows.entrySet()) {
+            Interval interval = window.getValue();
+            long scenarios = interval.passed.get() + interval.failed.get();
+            double throughput = scenarios * 1000.0 / ("overall".equals(window.getKey()) ? runMs : steadyStateMs);
+            text.append(String.format(Locale.ROOT, "%s: %d scenario(s) (%.2f/s), %d failed%n",
+                    window.getKey(), scenarios, throughput, interval.failed.get()));
+            interval.snapshot().forEach((step, samples) -> {
+                long[] sorted = samples.sorted();
+                summary.add(csvRow(window.getKey() + "," + csv(step), sorted, throughput, interval.failed.get()));
+                text.append("  ").append(formatStep(step, sorted)).append(System.lineSeparator());
+            });
+        }
+        Files.write(dir.resolve("load-summary.csv"), summary, StandardCharsets.UTF_8);
+        return text.toString();
+    }
+
+    private static String formatStep(String step, long[] sorted) {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "%-60s n=%-6d", step, sorted.length));
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(Locale.ROOT, " p%.0f=%.0fms", percentile, percentileMs(sorted, percentile)));
+        }
+        return text.toString();
+    }
+
+    private static String csvRow(String prefix, long[] sorted, double throughput, long failed) {
+        StringBuilder row = new StringBuilder(prefix).append(',').append(sorted.length);
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(Locale.ROOT, ",%.1f", percentileMs(sorted, percentile)));
+        }
+        row.append(String.format(Locale.ROOT, ",%.1f,%.2f,%d",
+                sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6, throughput, failed));
+        return row.toString();
+    }
+
+    /**
+     * Nearest-rank percentile of sorted nanosecond samples, in milliseconds
+     */
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    private static String csv(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static class Interval {
+        // Steps in the order they were first seen, which is the scenario's order
+        private final Map<String, Samples> samples = new LinkedHashMap<>();
+        private final AtomicLong passed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        synchronized Samples samplesFor(String step) {
+            return samples.computeIfAbsent(step, s -> new Samples());
+        }
+
+        synchronized Map<String, Samples> snapshot() {
+            return new LinkedHashMap<>(samples);
+        }
+
+        void merge(Interval other) {
+            passed.addAndGet(other.passed.get());
+            failed.addAndGet(other.failed.get());
+            other.snapshot().forEach((step, otherSamples) -> samplesFor(step).addAll(otherSamples));
+        }
+    }
+
+    /**
+     * Growable array of latency samples in nanoseconds
+     */
+    private static class Samples {
+        private long[] values = new long[64];
+        private int size;
+
+        synchronized void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (long value : other.sorted()) {
+                add(value);
+            }
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package utils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Minimal streaming writer for Motion-JPEG video in an AVI container.
+ *
+ * JPEG frames are written as they arrive at a fixed frame rate; a frame that repeats
+ * the previous one is written as a zero-length chunk, which players show as "keep the
+ * previous picture", so a mostly static page costs only a few bytes per frame. The
+ * headers are written with placeholder sizes and patched once the file is closed.
+ */
+public class MjpegAviWriter implements Closeable {
+
+    private static final int AVIF_HASINDEX = 0x10;
+    private static final int AVIIF_KEYFRAME = 0x10;
+
+    private final Path path;
+    private final OutputStream out;
+    private final int fps;
+    private long position;
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private long moviListStart;
+    private int width;
+    private int height;
+    private int frames;
+    private int maxChunkSize;
+    private boolean headerWritten;
+
+    public MjpegAviWriter(Path path, int fps) throws IOException {
+        this.path = path;
+        this.out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+        this.fps = fps;
+    }
+
+    /**
+     * Appends a JPEG frame; the first frame fixes the video dimensions
+     */
+    public void writeFrame(byte[] jpeg) throws IOException {
+        if (!headerWritten) {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+            if (image == null) {
+                throw new IOException("First frame is not a readable JPEG");
+            }
+            width = image.getWidth();
+            height = image.getHeight();
+            writeHeader();
+        }
+        writeChunk(jpeg);
+    }
+
+    /**
+     * Appends a frame that repeats the previous one
+     */
+    public void writeRepeatedFrame() throws IOException {
+        if (headerWritten) {
+            writeChunk(new byte[0]);
+        }
+    }
+
+    private void writeChunk(byte[] data) throws IOException {
+        long chunkOffset = position;
+        write(ascii("00dc"));
+        write(int32(data.length));
+        write(data);
+        if (data.length % 2 != 0) {
+            write(new byte[1]);
+        }
+
+        // idx1 offsets are relative to the "movi" fourcc
+        index.write(ascii("00dc"));
+        index.write(int32(data.length > 0 ? AVIIF_KEYFRAME : 0));
+        index.write(int32((int) (chunkOffset - (moviListStart + 8))));
+        index.write(int32(data.length));
+        frames++;
+        maxChunkSize = Math.max(maxChunkSize, data.length);
+    }
+
+    private void writeHeader() throws IOException {
+        write(ascii("RIFF"));
+        write(int32(0));                         // patched: RIFF size
+        write(ascii("AVI "));
+
+        write(ascii("LIST"));
+        write(int32(4 + 8 + 56 + 8 + 4 + 8 + 56 + 8 + 40));
+        write(ascii("hdrl"));
+
+        write(ascii("avih"));
+        write(int32(56));
+        write(int32(1_000_000 / fps));           // microseconds per frame
+        write(int32(0));                         // max bytes per second
+        write(int32(0));                         // padding granularity
+        write(int32(AVIF_HASINDEX));
+        write(int32(0));                         // patched: total frames
+        write(int32(0));                         // initial frames
+        write(int32(1));                         // streams
+        write(int32(0));                         // patched: suggested buffer size
+        write(int32(width));
+        write(int32(height));
+        write(new byte[16]);                     // reserved
+
+        write(ascii("LIST"));
+        write(int32(4 + 8 + 56 + 8 + 40));
+        write(ascii("strl"));
+
+        write(ascii("strh"));
+        write(int32(56));
+        write(ascii("vids"));
+        write(ascii("MJPG"));
+        write(int32(0));                         // flags
+        write(int32(0));                         // priority and language
+        write(int32(0));                         // initial frames
+        write(int32(1));                         // scale
+        write(int32(fps));                       // rate: fps = rate / scale
+        write(int32(0));                         // start
+        write(int32(0));                         // patched: length in frames
+        write(int32(0));                         // patched: suggested buffer size
+        write(int32(-1));                        // quality
+        write(int32(0));                         // sample size
+        write(int16(0));
+        write(int16(0));
+        write(int16(width));
+        write(int16(height));
+
+        write(ascii("strf"));
+        write(int32(40));
+        write(int32(40));                        // BITMAPINFOHEADER size
+        write(int32(width));
+        write(int32(height));
+        write(int16(1));                         // planes
+        write(int16(24));                        // bit count
+        write(ascii("MJPG"));
+        write(int32(width * height * 3));
+        write(new byte[16]);                     // resolution and palette
+
+        moviListStart = position;
+        write(ascii("LIST"));
+        write(int32(0));                         // patched: movi size
+        write(ascii("movi"));
+        headerWritten = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!headerWritten) {
+                return;
+            }
+            long moviEnd = position;
+            write(ascii("idx1"));
+            write(int32(index.size()));
+            write(index.toByteArray());
+            long end = position;
+            out.close();
+
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                patch(file, 4, (int) (end - 8));
+                patch(file, moviListStart + 4, (int) (moviEnd - moviListStart - 8));
+                // avih: total frames and suggested buffer size
+                patch(file, 12 + 12 + 8 + 16, frames);
+                patch(file, 12 + 12 + 8 + 28, maxChunkSize + 8);
+                // strh: length and suggested buffer size
+                long strh = 12 + 12 + 8 + 56 + 12 + 8;
+                patch(file, strh + 32, frames);
+                patch(file, strh + 36, maxChunkSize + 8);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void write(byte[] data) throws IOException {
+        out.write(data);
+        position += data.length;
+    }
+
+    private static void patch(RandomAccessFile file, long offset, int value) throws IOException {
+        file.seek(offset);
+        file.write(int32(value));
+    }
+
+    private static byte[] ascii(String fourcc) {
+        return fourcc.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] int32(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static byte[] int16(int value) {
+        return ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN).putShort((short) value).array();
+    }
+}
@@ -0,0 +1,380 @@
+package utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.service.DriverService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the driver and browser processes behind every local WebDriver session so that
+ * none of them outlive the run.
+ *
+ * A driver service's process is the JVM child started with the service's --port argument,
+ * so services can start in parallel. Where command lines cannot be read, services are
+ * started under a lock and the JVM's new child processes are taken as the service. Once
+ * the browser is up, the service's descendants are recorded too.
+ * Every tracked process is written with its start time to a per-JVM ledger in
+ * process.ledger.dir. Processes are killed, with all their descendants:
+ * - when quitting a session failed, or the process is still running after quit
+ * - when the command watchdog kills a wedged session
+ * - by a shutdown hook, for sessions that were never quit
+ * - on the next run, for the ledgers of JVMs that died without running their hook;
+ *   a PID is only killed if its start time still matches, so reused PIDs are safe
+ *
+ * The tracker also counts open sessions of every browser type, so a leak shows up in
+ * the session count at the end of the run instead of as a slowly filling machine.
+ */
+public class ProcessLifecycleTracker {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessLifecycleTracker.class);
+
+    private static final Object SPAWN_LOCK = new Object();
+    // Our own command line is readable exactly when our children's are
+    private static final boolean COMMAND_LINES_VISIBLE = ProcessHandle.current().info().arguments().isPresent();
+    private static ProcessLifecycleTracker instance;
+
+    private final Path ledgerDir;
+    private final Path ledgerFile;
+    private final Map<WebDriver, Session> sessions = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicInteger openedSessions = new AtomicInteger();
+    private final AtomicInteger reapedAfterQuit = new AtomicInteger();
+    private final AtomicInteger reapedAtStartup = new AtomicInteger();
+    private final AtomicInteger reapedAtShutdown = new AtomicInteger();
+
+    private ProcessLifecycleTracker() {
+        ProcessHandle jvm = ProcessHandle.current();
+        String configuredDir = DriverManager.getConfig("process.ledger.dir", "").trim();
+        this.ledgerDir = configuredDir.isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "selenium-process-ledger")
+                : Paths.get(configuredDir);
+        this.ledgerFile = ledgerDir.resolve(jvm.pid() + ".ledger");
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(DriverManager.getConfig("process.tracker.enabled", "true"));
+    }
+
+    public static synchronized ProcessLifecycleTracker getInstance() {
+        if (instance == null) {
+            instance = new ProcessLifecycleTracker();
+            if (isEnabled()) {
+                instance.sweepDeadLedgers();
+                Runtime.getRuntime().addShutdownHook(new Thread(instance::reapAll, "process-reaper"));
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a driver service and finds its process among the JVM's new children
+     *
+     * @return the service's process(es), empty when tracking is disabled
+     */
+    public List<ProcessHandle> startService(DriverService service) throws IOException {
+        if (!isEnabled()) {
+            service.start();
+            return Collections.emptyList();
+        }
+        if (COMMAND_LINES_VISIBLE) {
+            service.start();
+            int port = service.getUrl().getPort();
+            List<ProcessHandle> found = ProcessHandle.current().children()
+                    .filter(child -> hasPortArgument(child, port))
+                    .collect(Collectors.toList());
+            if (found.isEmpty()) {
+                logger.warn("No driver process found for port {}; it will not be tracked", port);
+            }
+            return found;
+        }
+        // Only one service starts at a time, so the new children belong to this one
+        synchronized (SPAWN_LOCK) {
+            Set<Long> before = ProcessHandle.current().children().map(ProcessHandle::pid).collect(Collectors.toSet());
+            service.start();
+            return ProcessHandle.current().children()
+                    .filter(child -> !before.contains(child.pid()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean hasPortArgument(ProcessHandle process, int port) {
+        String[] args = process.info().arguments().orElse(new String[0]);
+        for (int i = 0; i < args.length; i++) {
+            // --port=4444 (chromedriver, geckodriver, msedgedriver) or --port 4444 (safaridriver)
+            if (args[i].equals("--port=" + port)
+                || (args[i].equals("--port") && i + 1 < args.length && args[i + 1].equals(String.valueOf(port)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a started session and the browser processes below its driver service
+     *
+     * @param driver    the unwrapped driver
+     * @param processes the processes from {@link #startService(DriverService)}, empty for in-process or remote drivers
+     */
+    public void register(WebDriver driver, List<ProcessHandle> processes) {
+        Session session = new Session(Thread.currentThread().getName());
+        for (ProcessHandle process : processes) {
+            session.add(process);
+            process.descendants().forEach(session::add);
+        }
+        sessions.put(driver, session);
+        openedSessions.incrementAndGet();
+        writeLedger();
+    }
+
+    /**
+     * Forgets a session after quit; any of its processes still running are killed
+     */
+    public void quitCompleted(WebDriver driver) {
+        Session session = sessions.remove(driver);
+        if (session == null) {
+            return;
+        }
+        int killed = kill(session, Duration.ofMillis(Long.parseLong(
+                DriverManager.getConfig("process.quit.graceMs", "2000"))));
+        if (killed > 0) {
+            reapedAfterQuit.addAndGet(killed);
+            logger.warn("{} process(es) were still running after quit and have been killed", killed);
+        }
+        writeLedger();
+    }
+
+    /**
+     * Kills everything behind a session whose quit failed or that is wedged
+     */
+    public void kill(WebDriver driver) {
+        Session session = sessions.remove(driver);
+        if (session == null) {
+            return;
+        }
+        int killed = kill(session, Duration.ZERO);
+        reapedAfterQuit.addAndGet(killed);
+        logger.warn("Killed {} process(es) of an abandoned session", killed);
+        writeLedger();
+    }
+
+    /**
+     * Kills processes that were started for a session that never came up
+     */
+    public void kill(List<ProcessHandle> processes) {
+        Session session = new Session(Thread.currentThread().getName());
+        processes.forEach(session::add);
+        processes.forEach(process -> process.descendants().forEach(session::add));
+        reapedAfterQuit.addAndGet(kill(session, Duration.ZERO));
+    }
+
+    public int getOpenSessionCount() {
+        return sessions.size();
+    }
+
+    public String getStats() {
+        long processes;
+        synchronized (sessions) {
+            processes = sessions.values().stream().mapToLong(s -> s.liveProcesses().size()).sum();
+        }
+        return String.format("%d session(s) opened, %d still open with %d live process(es); "
+                             + "killed %d after quit, %d left over from earlier runs",
+                             openedSessions.get(), getOpenSessionCount(), processes,
+                             reapedAfterQuit.get(), reapedAtStartup.get());
+    }
+
+    /**
+     * Describes the sessions that are still open, e.g. at the end of a run when there should be none.
+     * Only sessions opened by the calling thread's group are included, so runners that run several
+     * Cucumber runtimes at once give each runtime its own thread group.
+     */
+    public List<String> describeOpenSessions() {
+        ThreadGroup runtime = Thread.currentThread().getThreadGroup();
+        List<String> open = new ArrayList<>();
+        synchronized (sessions) {
+            sessions.values().stream()
+                    .filter(session -> runtime.parentOf(session.group))
+                    .map(session -> String.format("opened by %s %d s ago, %d live process(es)",
+                            session.owner, Duration.between(session.opened, Instant.now()).getSeconds(),
+                            session.liveProcesses().size()))
+                    .forEach(open::add);
+        }
+        return open;
+    }
+
+    /**
+     * Waits up to the grace period for the processes to exit on their own, then kills the rest
+     *
+     * @return how many processes had to be killed
+     */
+    private static int kill(Session session, Duration grace) {
+        long deadline = System.nanoTime() + grace.toNanos();
+        List<ProcessHandle> alive = session.liveProcesses();
+        while (!alive.isEmpty() && System.nanoTime() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            alive = session.liveProcesses();
+        }
+        // Browsers spawn more processes during the session, so take the live tree as well
+        Set<ProcessHandle> tree = new LinkedHashSet<>(alive);
+        alive.forEach(process -> process.descendants().forEach(tree::add));
+        tree.forEach(ProcessHandle::destroyForcibly);
+        return tree.size();
+    }
+
+    private void reapAll() {
+        List<Session> remaining;
+        synchronized (sessions) {
+            remaining = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        for (Session session : remaining) {
+            reapedAtShutdown.addAndGet(kill(session, Duration.ZERO));
+        }
+        if (reapedAtShutdown.get() > 0) {
+            logger.warn("Killed {} process(es) of sessions that were never quit", reapedAtShutdown.get());
+        }
+        try {
+            Files.deleteIfExists(ledgerFile);
+        } catch (IOException e) {
+            logger.debug("Error deleting process ledger: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Kills the processes listed in ledgers of JVMs that are no longer running
+     */
+    private void sweepDeadLedgers() {
+        if (!Files.isDirectory(ledgerDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> ledgers = Files.newDirectoryStream(ledgerDir, "*.ledger")) {
+            for (Path ledger : ledgers) {
+                List<String> lines = Files.readAllLines(ledger, StandardCharsets.UTF_8);
+                if (lines.isEmpty() || ledger.equals(ledgerFile) || isAlive(lines.get(0))) {
+                    continue;
+                }
+                int killed = 0;
+                for (String line : lines.subList(1, lines.size())) {
+                    Optional<ProcessHandle> process = find(line);
+                    if (process.isPresent()) {
+                        process.get().descendants().forEach(ProcessHandle::destroyForcibly);
+                        process.get().destroyForcibly();
+                        killed++;
+                    }
+                }
+                Files.deleteIfExists(ledger);
+                if (killed > 0) {
+                    reapedAtStartup.addAndGet(killed);
+                    logger.warn("Killed {} process(es) left over by run {}", killed, lines.get(0));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Error sweeping process ledgers: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isAlive(String entry) {
+        return find(entry).isPresent();
+    }
+
+    /**
+     * Looks up a ledger entry ("pid startMillis command"), only if the PID was not reused since
+     */
+    private static Optional<ProcessHandle> find(String entry) {
+        String[] fields = entry.split(" ", 3);
+        if (fields.length < 2) {
+            return Optional.empty();
+        }
+        try {
+            long startMillis = Long.parseLong(fields[1]);
+            return ProcessHandle.of(Long.parseLong(fields[0]))
+                    .filter(ProcessHandle::isAlive)
+                    .filter(process -> process.info().startInstant()
+                            .map(start -> start.toEpochMilli() == startMillis)
+                            .orElse(false));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String entry(ProcessHandle process) {
+        return process.pid() + " "
+               + process.info().startInstant().map(Instant::toEpochMilli).orElse(0L) + " "
+               + process.info().command().orElse("?");
+    }
+
+    /**
+     * Rewrites this JVM's ledger: the JVM itself first, then every tracked process
+     */
+    private synchronized void writeLedger() {
+        if (!isEnabled()) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(entry(ProcessHandle.current()));
+        synchronized (sessions) {
+            sessions.values().forEach(session -> lines.addAll(session.entries()));
+        }
+        try {
+            Files.createDirectories(ledgerDir);
+            if (lines.size() == 1) {
+                Files.deleteIfExists(ledgerFile);
+            } else {
+                Files.write(ledgerFile, lines, StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            logger.warn("Error writing process ledger: {}", e.getMessage());
+        }
+    }
+
+    private static class Session {
+        private final String owner;
+        private final ThreadGroup group = Thread.currentThread().getThreadGroup();
+        private final Instant opened = Instant.now();
+        // Ledger entry per process, so a reused PID is never mistaken for ours
+        private final Map<ProcessHandle, String> processes = new LinkedHashMap<>();
+
+        Session(String owner) {
+            this.owner = owner;
+        }
+
+        synchronized void add(ProcessHandle process) {
+            processes.put(process, entry(process));
+        }
+
+        synchronized List<String> entries() {
+            return new ArrayList<>(processes.values());
+        }
+
+        synchronized List<ProcessHandle> liveProcesses() {
+            return processes.values().stream()
+                    .map(ProcessLifecycleTracker::find)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .collect(Collectors.toList());
+        }
+    }
+}
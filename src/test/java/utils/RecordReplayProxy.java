@@ -0,0 +1,391 @@
+package utils;
+
+import org.openqa.selenium.Proxy;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process HTTP record/replay proxy that DriverManager wires into every browser.
+ *
+ * Modes (proxy.mode in driver.properties or as a system property):
+ * - off: no proxy, browsers talk to the network directly (default)
+ * - record: requests are forwarded upstream and every response is stored in the {@link HttpArchive}
+ * - replay: responses are served from the archive only; unknown requests get a 404
+ *
+ * HTTPS traffic arrives as CONNECT tunnels. The proxy does not terminate TLS, so in
+ * record mode tunnels are passed through unrecorded, and in replay mode they are refused
+ * to keep the run off the network. Plain HTTP targets are fully recorded and replayed,
+ * including local stand-in servers: browsers are told not to bypass the proxy for
+ * loopback addresses, see {@link #sendLoopbackThroughProxy}.
+ */
+public class RecordReplayProxy {
+    private static final Logger logger = LoggerFactory.getLogger(RecordReplayProxy.class);
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "proxy-connection", "keep-alive", "proxy-authorization", "proxy-authenticate",
+            "te", "trailer", "transfer-encoding", "upgrade", "host", "content-length"));
+
+    private static RecordReplayProxy instance;
+
+    private final String mode;
+    private final HttpArchive archive;
+    private final long replayLatencyMs;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "record-replay-proxy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong tunnels = new AtomicLong();
+    private final AtomicLong refusedTunnels = new AtomicLong();
+
+    private RecordReplayProxy(String mode, HttpArchive archive, int port, long replayLatencyMs) throws IOException {
+        this.mode = mode;
+        this.archive = archive;
+        this.replayLatencyMs = replayLatencyMs;
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+
+        Thread acceptor = new Thread(this::acceptLoop, "record-replay-proxy-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Starts the proxy on first use if proxy.mode is record or replay.
+     *
+     * @return Selenium proxy settings pointing at the running proxy, or null when the proxy is off
+     */
+    public static synchronized Proxy seleniumProxyIfEnabled() {
+        String mode = DriverManager.getConfig("proxy.mode", "off").toLowerCase(Locale.ROOT);
+        if (!"record".equals(mode) && !"replay".equals(mode)) {
+            return null;
+        }
+        if (instance == null) {
+            try {
+                File archiveDir = new File(DriverManager.getConfig("proxy.archive.dir", "http-archive"));
+                HttpArchive archive = "record".equals(mode)
+                        ? HttpArchive.openForRecording(archiveDir)
+                        : HttpArchive.openForReplay(archiveDir);
+                int port = Integer.parseInt(DriverManager.getConfig("proxy.port", "0"));
+                long latency = Long.parseLong(DriverManager.getConfig("proxy.replay.latency.ms", "0"));
+
+                instance = new RecordReplayProxy(mode, archive, port, latency);
+                Runtime.getRuntime().addShutdownHook(new Thread(instance::stop));
+                logger.info("Record/replay proxy started in {} mode on port {} using archive {}{}",
+                            mode, instance.getPort(), archiveDir.getAbsolutePath(),
+                            "replay".equals(mode) ? " (" + archive.size() + " recorded responses)" : "");
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to start record/replay proxy", e);
+            }
+        }
+
+        String address = "127.0.0.1:" + instance.getPort();
+        Proxy proxy = new Proxy();
+        proxy.setHttpProxy(address);
+        proxy.setSslProxy(address);
+        return proxy;
+    }
+
+    /**
+     * Chrome and Firefox never send localhost and 127.0.0.1 through a proxy by default,
+     * which would leave local stand-in servers unrecorded; this opts them back in.
+     */
+    public static void sendLoopbackThroughProxy(ChromeOptions options) {
+        options.addArguments("--proxy-bypass-list=<-loopback>");
+    }
+
+    public static void sendLoopbackThroughProxy(FirefoxOptions options) {
+        options.addPreference("network.proxy.allow_hijacking_localhost", true);
+    }
+
+    /**
+     * Returns the running proxy, or null if it was never started.
+     */
+    public static synchronized RecordReplayProxy getInstance() {
+        return instance;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getStats() {
+        return "mode=" + mode + ", recorded=" + recorded.get() + ", replayed=" + replayed.get()
+                + ", misses=" + misses.get() + ", https tunnels=" + tunnels.get()
+                + ", refused https tunnels=" + refusedTunnels.get();
+    }
+
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.error("Error stopping record/replay proxy: {}", e.getMessage());
+        }
+        workers.shutdownNow();
+        archive.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                workers.execute(() -> handle(client));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.error("Record/replay proxy accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        try (Socket socket = client) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+
+            String head = readHead(in);
+            if (head == null || head.isEmpty()) {
+                return;
+            }
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length < 2) {
+                writeError(out, 400, "Malformed request line");
+                return;
+            }
+            String method = requestLine[0];
+            String target = requestLine[1];
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    headers.put(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+                }
+            }
+
+            if ("CONNECT".equalsIgnoreCase(method)) {
+                if ("replay".equals(mode)) {
+                    // Tunnels cannot be replayed, and passing them through would reach the real network
+                    refusedTunnels.incrementAndGet();
+                    logger.warn("Refusing HTTPS tunnel to {} in replay mode; only plain HTTP is replayed", target);
+                    writeError(out, 403, "HTTPS is not available in replay mode: " + target);
+                    return;
+                }
+                tunnel(socket, in, out, target);
+                return;
+            }
+
+            byte[] body = readBody(in, headers);
+            String key = HttpArchive.key(method, target, body);
+
+            if ("replay".equals(mode)) {
+                replay(out, key);
+            } else {
+                forwardAndRecord(out, method, target, headers, body, key);
+            }
+        } catch (Exception e) {
+            logger.error("Record/replay proxy request failed: {}", e.getMessage());
+        }
+    }
+
+    private void replay(OutputStream out, String key) throws IOException {
+        if (replayLatencyMs > 0) {
+            try {
+                Thread.sleep(replayLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        HttpArchive.Response response = archive.lookup(key);
+        if (response == null) {
+            misses.incrementAndGet();
+            writeError(out, 404, "No recorded response for " + key);
+            return;
+        }
+        replayed.incrementAndGet();
+        writeHead(out, response.status, response.headers, response.body.remaining());
+        Channels.newChannel(out).write(response.body.duplicate());
+        out.flush();
+    }
+
+    private void forwardAndRecord(OutputStream out, String method, String target, Map<String, String> headers,
+                                  byte[] body, String key) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(target).openConnection(java.net.Proxy.NO_PROXY);
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestMethod(method);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (!HOP_BY_HOP_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        if (body.length > 0) {
+            connection.setDoOutput(true);
+            try (OutputStream upstream = connection.getOutputStream()) {
+                upstream.write(body);
+            }
+        }
+
+        int status = connection.getResponseCode();
+        Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            if (header.getKey() != null && !HOP_BY_HOP_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                responseHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+        InputStream responseStream = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] responseBody = responseStream == null ? new byte[0] : responseStream.readAllBytes();
+        connection.disconnect();
+
+        archive.record(key, status, responseHeaders, responseBody);
+        recorded.incrementAndGet();
+
+        writeHead(out, status, responseHeaders, responseBody.length);
+        out.write(responseBody);
+        out.flush();
+    }
+
+    private void tunnel(Socket client, InputStream in, OutputStream out, String target) throws IOException {
+        String[] hostPort = target.split(":");
+        int port = hostPort.length > 1 ? Integer.parseInt(hostPort[1]) : 443;
+        try (Socket upstream = new Socket(hostPort[0], port)) {
+            tunnels.incrementAndGet();
+            out.write("HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            workers.execute(() -> pump(in, upstream));
+            pump(upstream.getInputStream(), client);
+        }
+    }
+
+    private static void pump(InputStream from, Socket to) {
+        try {
+            from.transferTo(to.getOutputStream());
+            to.shutdownOutput();
+        } catch (IOException e) {
+            // One side closed the tunnel; nothing to do
+        }
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int lastFour = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            head.write(b);
+            // Stop at the blank line (\r\n\r\n) that terminates the request head
+            lastFour = (lastFour << 8) | b;
+            if (lastFour == 0x0D0A0D0A) {
+                break;
+            }
+        }
+        return head.toString(StandardCharsets.ISO_8859_1).trim();
+    }
+
+    private static byte[] readBody(InputStream in, Map<String, String> headers) throws IOException {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if ("content-length".equalsIgnoreCase(header.getKey())) {
+                return in.readNBytes(Integer.parseInt(header.getValue()));
+            }
+            if ("transfer-encoding".equalsIgnoreCase(header.getKey())
+                    && header.getValue().toLowerCase(Locale.ROOT).contains("chunked")) {
+                return readChunked(in);
+            }
+        }
+        return new byte[0];
+    }
+
+    private static byte[] readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine(in);
+            int size = Integer.parseInt(sizeLine.split(";")[0].trim(), 16);
+            if (size == 0) {
+                // Skip optional trailers up to the terminating empty line
+                while (!readLine(in).isEmpty()) {
+                    // ignore trailer
+                }
+                return body.toByteArray();
+            }
+            body.write(in.readNBytes(size));
+            readLine(in);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void writeHead(OutputStream out, int status, Map<String, List<String>> headers, int contentLength)
+            throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append(" ").append(reason(status)).append("\r\n");
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        head.append("Content-Length: ").append(contentLength).append("\r\n");
+        head.append("Connection: close\r\n\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void writeError(OutputStream out, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", List.of("text/plain; charset=utf-8"));
+        writeHead(out, status, headers, body.length);
+        out.write(body);
+        out.flush();
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 500: return "Internal Server Error";
+            default: return "Status " + status;
+        }
+    }
+}
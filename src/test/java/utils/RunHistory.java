@@ -0,0 +1,400 @@
+package utils;
+
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File-based history of test runs, with a trend report and a step duration regression gate.
+ *
+ * Each run's cucumber-json-report.json is ingested into two append-only, tab-separated
+ * files under history.dir (kept outside target/ so that mvn clean does not wipe it):
+ * - runs.tsv: one row per run with its totals
+ * - samples.tsv: one row per scenario and per step with status, duration and screenshot count
+ *
+ * The gate compares the p95 duration of every step in the latest run with its p95 over
+ * the history.baseline.runs runs before it, and fails when it is more than
+ * history.gate.margin (a fraction, e.g. 0.25 for 25%) and history.gate.minDeltaMs slower.
+ *
+ * Usage: RunHistory ingest [cucumber-json-report]
+ *        RunHistory report
+ *        RunHistory gate
+ */
+public class RunHistory {
+    private static final Logger logger = LoggerFactory.getLogger(RunHistory.class);
+
+    private static final String RUNS_HEADER = "run_id\tstarted\tcommit\tscenarios\tpassed\tfailed\tduration_ms\tscreenshots";
+    private static final String SAMPLES_HEADER = "run_id\tkind\tfeature\tscenario\tstep\tstatus\tduration_ms\tscreenshots";
+    private static final DateTimeFormatter RUN_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+            .withZone(ZoneId.systemDefault());
+
+    private final Path runsFile;
+    private final Path samplesFile;
+
+    public RunHistory(Path dir) {
+        this.runsFile = dir.resolve("runs.tsv");
+        this.samplesFile = dir.resolve("samples.tsv");
+    }
+
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "ingest";
+        RunHistory history = new RunHistory(Paths.get(DriverManager.getConfig("history.dir", "run-history")));
+        try {
+            switch (command) {
+                case "ingest":
+                    history.ingest(Paths.get(args.length > 1 ? args[1]
+                            : DriverManager.getConfig("history.source", "target/cucumber-reports/cucumber-json-report.json")));
+                    break;
+                case "report":
+                    history.writeTrendReport(Paths.get(DriverManager.getConfig("history.report",
+                            "target/run-history/trend-report.html")));
+                    break;
+                case "gate":
+                    if (!history.gate()) {
+                        System.exit(1);
+                    }
+                    break;
+                default:
+                    logger.error("Unknown command: {} (expected ingest, report or gate)", command);
+                    System.exit(2);
+            }
+        } catch (IOException e) {
+            logger.error("Error in run history {}: {}", command, e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Appends the scenarios and steps of a Cucumber JSON report to the store.
+     * A report that was already ingested (same content) is skipped.
+     */
+    public void ingest(Path cucumberJson) throws IOException {
+        if (!Files.exists(cucumberJson)) {
+            logger.warn("No Cucumber JSON report at {}, nothing to ingest", cucumberJson.toAbsolutePath());
+            return;
+        }
+        byte[] content = Files.readAllBytes(cucumberJson);
+        String hash = shortHash(content);
+        // The file time changes when a report is touched or downloaded again, so only the content identifies a run
+        Optional<String> ingested = readRunIds().stream().filter(id -> id.endsWith("-" + hash)).findFirst();
+        if (ingested.isPresent()) {
+            logger.info("Run {} is already in the history", ingested.get());
+            return;
+        }
+        Instant started = Files.getLastModifiedTime(cucumberJson).toInstant();
+        String runId = RUN_ID_FORMAT.format(started) + "-" + hash;
+
+        List<Map<String, Object>> features = new Json().toType(new String(content, StandardCharsets.UTF_8), Json.LIST_OF_MAPS_TYPE);
+        List<String> samples = new ArrayList<>();
+        int scenarios = 0;
+        int passed = 0;
+        long totalMs = 0;
+        int totalScreenshots = 0;
+        for (Map<String, Object> feature : features) {
+            String featureUri = String.valueOf(feature.getOrDefault("uri", feature.get("name")));
+            for (Map<String, Object> element : listOf(feature.get("elements"))) {
+                if (!"scenario".equals(element.get("type"))) {
+                    continue;
+                }
+                String scenarioName = String.valueOf(element.get("name")) + ":" + element.get("line");
+                boolean scenarioPassed = true;
+                long scenarioNanos = 0;
+                int scenarioScreenshots = 0;
+
+                for (String hookList : Arrays.asList("before", "after")) {
+                    for (Map<String, Object> hook : listOf(element.get(hookList))) {
+                        scenarioNanos += durationOf(hook);
+                        scenarioPassed &= "passed".equals(statusOf(hook));
+                        scenarioScreenshots += screenshotsIn(hook);
+                    }
+                }
+                for (Map<String, Object> step : listOf(element.get("steps"))) {
+                    long stepNanos = durationOf(step);
+                    int stepScreenshots = screenshotsIn(step);
+                    // BeforeStep/AfterStep hooks (and their screenshots) are reported inside the step
+                    for (String hookList : Arrays.asList("before", "after")) {
+                        for (Map<String, Object> hook : listOf(step.get(hookList))) {
+                            scenarioNanos += durationOf(hook);
+                            stepScreenshots += screenshotsIn(hook);
+                        }
+                    }
+                    String status = statusOf(step);
+                    scenarioPassed &= "passed".equals(status);
+                    scenarioNanos += stepNanos;
+                    scenarioScreenshots += stepScreenshots;
+                    samples.add(row(runId, "step", featureUri, scenarioName, String.valueOf(step.get("name")),
+                                    status, String.valueOf(stepNanos / 1_000_000), String.valueOf(stepScreenshots)));
+                }
+                samples.add(row(runId, "scenario", featureUri, scenarioName, "",
+                                scenarioPassed ? "passed" : "failed",
+                                String.valueOf(scenarioNanos / 1_000_000), String.valueOf(scenarioScreenshots)));
+                scenarios++;
+                passed += scenarioPassed ? 1 : 0;
+                totalMs += scenarioNanos / 1_000_000;
+                totalScreenshots += scenarioScreenshots;
+            }
+        }
+
+        String commit = System.getenv().getOrDefault("GITHUB_SHA", "");
+        append(samplesFile, SAMPLES_HEADER, samples);
+        append(runsFile, RUNS_HEADER, Collections.singletonList(row(runId, started.toString(), commit,
+                String.valueOf(scenarios), String.valueOf(passed), String.valueOf(scenarios - passed),
+                String.valueOf(totalMs), String.valueOf(totalScreenshots))));
+        logger.info("Ingested run {}: {} scenario(s), {} failed, {} step sample(s)",
+                    runId, scenarios, scenarios - passed, samples.size() - scenarios);
+    }
+
+    /**
+     * Checks the latest run's step durations against the rolling baseline
+     *
+     * @return true if no step regressed
+     */
+    public boolean gate() throws IOException {
+        int baselineRuns = Integer.parseInt(DriverManager.getConfig("history.baseline.runs", "10"));
+        int minBaselineRuns = Integer.parseInt(DriverManager.getConfig("history.baseline.minRuns", "3"));
+        double margin = Double.parseDouble(DriverManager.getConfig("history.gate.margin", "0.25"));
+        long minDeltaMs = Long.parseLong(DriverManager.getConfig("history.gate.minDeltaMs", "100"));
+
+        List<String> runIds = new ArrayList<>(readRunIds());
+        if (runIds.size() < minBaselineRuns + 1) {
+            logger.info("Regression gate skipped: {} run(s) in the history, need {}", runIds.size(), minBaselineRuns + 1);
+            return true;
+        }
+        String latest = runIds.get(runIds.size() - 1);
+        Set<String> baseline = new LinkedHashSet<>(
+                runIds.subList(Math.max(0, runIds.size() - 1 - baselineRuns), runIds.size() - 1));
+
+        Map<String, List<Long>> latestDurations = new TreeMap<>();
+        Map<String, List<Long>> baselineDurations = new TreeMap<>();
+        for (String[] sample : readSamples()) {
+            // Only passed steps: a failing step's duration says little about its speed
+            if (!"step".equals(sample[1]) || !"passed".equals(sample[5])) {
+                continue;
+            }
+            long durationMs = Long.parseLong(sample[6]);
+            if (latest.equals(sample[0])) {
+                latestDurations.computeIfAbsent(sample[4], s -> new ArrayList<>()).add(durationMs);
+            } else if (baseline.contains(sample[0])) {
+                baselineDurations.computeIfAbsent(sample[4], s -> new ArrayList<>()).add(durationMs);
+            }
+        }
+
+        List<String> regressions = new ArrayList<>();
+        latestDurations.forEach((step, durations) -> {
+            List<Long> history = baselineDurations.get(step);
+            if (history == null) {
+                return;
+            }
+            long current = p95(durations);
+            long limit = p95(history);
+            if (current > limit * (1 + margin) && current - limit >= minDeltaMs) {
+                regressions.add(String.format(Locale.ROOT, "%s: p95 %d ms vs baseline %d ms (+%.0f%%)",
+                        step, current, limit, limit == 0 ? 100.0 : (current - limit) * 100.0 / limit));
+            }
+        });
+
+        if (regressions.isEmpty()) {
+            logger.info("Regression gate passed for run {} ({} step(s) checked against {} baseline run(s))",
+                        latest, latestDurations.size(), baseline.size());
+            return true;
+        }
+        logger.error("Regression gate failed for run {}:", latest);
+        regressions.forEach(regression -> logger.error("  {}", regression));
+        return false;
+    }
+
+    /**
+     * Writes an HTML report with per-run totals and each step's p95 duration over the recent runs
+     */
+    public void writeTrendReport(Path output) throws IOException {
+        int shownRuns = Integer.parseInt(DriverManager.getConfig("history.report.runs", "20"));
+        List<String[]> runs = readRows(runsFile);
+        List<String[]> recentRuns = runs.subList(Math.max(0, runs.size() - shownRuns), runs.size());
+        List<String> runIds = recentRuns.stream().map(run -> run[0]).collect(Collectors.toList());
+
+        Map<String, Map<String, List<Long>>> stepDurations = new TreeMap<>();
+        for (String[] sample : readSamples()) {
+            if ("step".equals(sample[1]) && runIds.contains(sample[0])) {
+                stepDurations.computeIfAbsent(sample[4], s -> new LinkedHashMap<>())
+                        .computeIfAbsent(sample[0], r -> new ArrayList<>()).add(Long.parseLong(sample[6]));
+            }
+        }
+
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html><html><head><meta charset='utf-8'><title>Run History</title><style>")
+            .append("body{font-family:Arial,sans-serif;margin:20px;color:#333}")
+            .append("table{border-collapse:collapse;margin-bottom:30px}")
+            .append("th,td{border:1px solid #ddd;padding:6px 10px;text-align:right}")
+            .append("th{background:#2c3e50;color:#fff}td:first-child{text-align:left}")
+            .append(".failed{color:#c0392b;font-weight:bold}</style></head><body>")
+            .append("<h1>Run History</h1><h2>Runs</h2><table><tr><th>Run</th><th>Started</th><th>Scenarios</th>")
+            .append("<th>Passed</th><th>Failed</th><th>Duration (s)</th><th>Screenshots</th></tr>");
+        for (String[] run : recentRuns) {
+            html.append("<tr><td>").append(run[0]).append("</td><td>").append(run[1]).append("</td><td>")
+                .append(run[3]).append("</td><td>").append(run[4]).append("</td><td")
+                .append("0".equals(run[5]) ? ">" : " class='failed'>").append(run[5]).append("</td><td>")
+                .append(String.format(Locale.ROOT, "%.1f", Long.parseLong(run[6]) / 1000.0)).append("</td><td>")
+                .append(run[7]).append("</td></tr>");
+        }
+        html.append("</table><h2>Step p95 duration (ms)</h2><table><tr><th>Step</th><th>Trend</th>");
+        runIds.forEach(runId -> html.append("<th>").append(runId, 0, 15).append("</th>"));
+        html.append("</tr>");
+        stepDurations.forEach((step, byRun) -> {
+            List<Long> series = new ArrayList<>();
+            StringBuilder cells = new StringBuilder();
+            for (String runId : runIds) {
+                List<Long> durations = byRun.get(runId);
+                if (durations == null) {
+                    cells.append("<td></td>");
+                } else {
+                    series.add(p95(durations));
+                    cells.append("<td>").append(p95(durations)).append("</td>");
+                }
+            }
+            html.append("<tr><td>").append(escape(step)).append("</td><td>").append(sparkline(series))
+                .append("</td>").append(cells).append("</tr>");
+        });
+        html.append("</table></body></html>");
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.write(output, html.toString().getBytes(StandardCharsets.UTF_8));
+        logger.info("Trend report for {} run(s) written to: {}", recentRuns.size(), output.toAbsolutePath());
+    }
+
+    private static String sparkline(List<Long> series) {
+        if (series.size() < 2) {
+            return "";
+        }
+        long max = Math.max(1, Collections.max(series));
+        StringBuilder points = new StringBuilder();
+        for (int i = 0; i < series.size(); i++) {
+            points.append(i * 120 / (series.size() - 1)).append(',')
+                  .append(28 - series.get(i) * 26 / max).append(' ');
+        }
+        return "<svg width='120' height='30'><polyline fill='none' stroke='#2980b9' stroke-width='1.5' points='"
+               + points.toString().trim() + "'/></svg>";
+    }
+
+    private Set<String> readRunIds() throws IOException {
+        return readRows(runsFile).stream().map(run -> run[0]).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private List<String[]> readSamples() throws IOException {
+        return readRows(samplesFile);
+    }
+
+    private static List<String[]> readRows(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new ArrayList<>();
+        }
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.skip(1).filter(line -> !line.isEmpty())
+                    .map(line -> line.split("\t", -1))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void append(Path file, String header, List<String> rows) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        boolean newFile = !Files.exists(file);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (newFile) {
+                writer.write(header);
+                writer.newLine();
+            }
+            for (String row : rows) {
+                writer.write(row);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String row(String... values) {
+        return Arrays.stream(values)
+                .map(value -> value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' '))
+                .collect(Collectors.joining("\t"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> listOf(Object value) {
+        return value instanceof List ? (List<Map<String, Object>>) value : Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> resultOf(Map<String, Object> stepOrHook) {
+        Object result = stepOrHook.get("result");
+        return result instanceof Map ? (Map<String, Object>) result : Collections.emptyMap();
+    }
+
+    private static long durationOf(Map<String, Object> stepOrHook) {
+        Object duration = resultOf(stepOrHook).get("duration");
+        return duration instanceof Number ? ((Number) duration).longValue() : 0;
+    }
+
+    private static String statusOf(Map<String, Object> stepOrHook) {
+        return String.valueOf(resultOf(stepOrHook).getOrDefault("status", "unknown"));
+    }
+
+    private static int screenshotsIn(Map<String, Object> stepOrHook) {
+        int count = 0;
+        for (Map<String, Object> embedding : listOf(stepOrHook.get("embeddings"))) {
+            if (String.valueOf(embedding.get("mime_type")).startsWith("image/")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Nearest-rank 95th percentile
+     */
+    private static long p95(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(Math.max(0, (int) Math.ceil(0.95 * sorted.size()) - 1));
+    }
+
+    private static String shortHash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
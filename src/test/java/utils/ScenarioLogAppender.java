@@ -0,0 +1,104 @@
+package utils;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logback appender that collects the log events of each running scenario so Hooks
+ * can attach them to the report and write them to a per-scenario log file.
+ *
+ * Events are grouped by the scenarioId MDC key. Appending only stores a reference to
+ * the event in a per-scenario list (no formatting, no shared lock); formatting is
+ * deferred until the scenario is drained at the end of the scenario. Each scenario
+ * keeps at most maxEvents events, later ones are counted and dropped.
+ */
+public class ScenarioLogAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    public static final String SCENARIO_ID_KEY = "scenarioId";
+
+    private static final Map<String, ScenarioBuffer> buffers = new ConcurrentHashMap<>();
+    private static volatile ScenarioLogAppender instance;
+
+    private Encoder<ILoggingEvent> encoder;
+    private int maxEvents = 10000;
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+
+    public void setMaxEvents(int maxEvents) {
+        this.maxEvents = maxEvents;
+    }
+
+    @Override
+    public void start() {
+        if (encoder == null) {
+            addError("No encoder set for the scenario log appender " + name);
+            return;
+        }
+        instance = this;
+        super.start();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        String scenarioId = event.getMDCPropertyMap().get(SCENARIO_ID_KEY);
+        ScenarioBuffer buffer = scenarioId == null ? null : buffers.get(scenarioId);
+        if (buffer == null) {
+            return;
+        }
+        // Capture thread name, MDC and message now; formatting happens when the scenario is drained
+        event.prepareForDeferredProcessing();
+        buffer.add(event, maxEvents);
+    }
+
+    /**
+     * Starts collecting log events for a scenario
+     */
+    public static void beginScenario(String scenarioId) {
+        buffers.put(scenarioId, new ScenarioBuffer());
+    }
+
+    /**
+     * Stops collecting log events for a scenario and returns them formatted
+     *
+     * @return the scenario's log, or an empty array if nothing was collected
+     */
+    public static byte[] endScenario(String scenarioId) {
+        ScenarioBuffer buffer = buffers.remove(scenarioId);
+        ScenarioLogAppender appender = instance;
+        if (buffer == null || appender == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        synchronized (buffer) {
+            for (ILoggingEvent event : buffer.events) {
+                out.writeBytes(appender.encoder.encode(event));
+            }
+            if (buffer.dropped > 0) {
+                out.writeBytes(("... " + buffer.dropped + " more log events dropped\n").getBytes());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static class ScenarioBuffer {
+        private final List<ILoggingEvent> events = new ArrayList<>();
+        private int dropped;
+
+        synchronized void add(ILoggingEvent event, int maxEvents) {
+            if (events.size() < maxEvents) {
+                events.add(event);
+            } else {
+                dropped++;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a scenario as a Motion-JPEG video using the DevTools Page.startScreencast API.
+ *
+ * Chrome pushes a JPEG whenever the page repaints. Frames are handed to a background
+ * encoder thread, which places them on a fixed screencast.fps timeline: several frames
+ * within one time slot keep only the latest, identical consecutive frames and gaps
+ * without repaints become zero-length "repeat" frames. The browser is never asked for
+ * a screenshot, so recording adds no blocking driver commands to the steps.
+ *
+ * Only Chromium-based drivers expose DevTools; for other browsers start() returns null
+ * and the regular per-step screenshots are taken instead.
+ */
+public class ScreencastRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(ScreencastRecorder.class);
+
+    private static final Frame END_OF_STREAM = new Frame(new byte[0], 0);
+
+    private final DevTools devTools;
+    private final Path videoFile;
+    private final int fps;
+    private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+    // Acks are sent from here: sending from the DevTools listener thread would wait on itself
+    private final ExecutorService acker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "screencast-ack");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread encoder;
+    private volatile IOException encoderError;
+    private int receivedFrames;
+    private int skippedFrames;
+
+    private ScreencastRecorder(DevTools devTools, Path videoFile, int fps) {
+        this.devTools = devTools;
+        this.videoFile = videoFile;
+        this.fps = fps;
+        this.encoder = new Thread(this::encode, "screencast-encoder");
+        this.encoder.setDaemon(true);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(DriverManager.getConfig("screencast.enabled", "false"));
+    }
+
+    /**
+     * Starts recording the driver's current tab
+     *
+     * @param driver    the unwrapped driver, see {@link DriverManager#getRawDriver()}
+     * @param videoFile where the AVI file is written
+     * @return the running recorder, or null if the driver does not support screencasts
+     */
+    public static ScreencastRecorder start(WebDriver driver, Path videoFile) {
+        if (!(driver instanceof HasDevTools)) {
+            return null;
+        }
+        try {
+            Files.createDirectories(videoFile.toAbsolutePath().getParent());
+            DevTools devTools = ((HasDevTools) driver).getDevTools();
+            devTools.createSessionIfThereIsNotOne();
+
+            ScreencastRecorder recorder = new ScreencastRecorder(devTools, videoFile,
+                    Integer.parseInt(DriverManager.getConfig("screencast.fps", "5")));
+            recorder.encoder.start();
+            devTools.addListener(new Event<>("Page.screencastFrame", input -> input.<Map<String, Object>>read(Json.MAP_TYPE)),
+                                 recorder::onFrame);
+            devTools.send(new Command<>("Page.startScreencast", Map.of(
+                    "format", "jpeg",
+                    "quality", Integer.parseInt(DriverManager.getConfig("screencast.quality", "60")),
+                    "maxWidth", Integer.parseInt(DriverManager.getConfig("screencast.maxWidth", "1280")),
+                    "maxHeight", Integer.parseInt(DriverManager.getConfig("screencast.maxHeight", "720")))));
+            return recorder;
+        } catch (Exception e) {
+            logger.warn("Screencast unavailable, falling back to screenshots: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onFrame(Map<String, Object> frame) {
+        Object sessionId = frame.get("sessionId");
+        acker.execute(() -> {
+            try {
+                devTools.send(new Command<>("Page.screencastFrameAck", Map.of("sessionId", sessionId)));
+            } catch (Exception e) {
+                logger.debug("Screencast frame ack failed: {}", e.getMessage());
+            }
+        });
+
+        Map<String, Object> metadata = (Map<String, Object>) frame.get("metadata");
+        Object timestamp = metadata == null ? null : metadata.get("timestamp");
+        long timestampMs = timestamp instanceof Number
+                ? (long) (((Number) timestamp).doubleValue() * 1000)
+                : System.currentTimeMillis();
+        frames.add(new Frame(Base64.getDecoder().decode((String) frame.get("data")), timestampMs));
+    }
+
+    /**
+     * Stops the screencast and finishes the video file
+     *
+     * @return the recorded video, or null if nothing was recorded
+     */
+    public byte[] stop() {
+        try {
+            devTools.send(new Command<>("Page.stopScreencast", Map.of()));
+        } catch (Exception e) {
+            logger.debug("Error stopping screencast: {}", e.getMessage());
+        }
+        devTools.clearListeners();
+        acker.shutdown();
+        frames.add(END_OF_STREAM);
+        try {
+            encoder.join(TimeUnit.SECONDS.toMillis(30));
+            if (encoderError != null) {
+                throw encoderError;
+            }
+            logger.info("Screencast recorded: {} frame(s) received, {} skipped, {} bytes",
+                        receivedFrames, skippedFrames, Files.exists(videoFile) ? Files.size(videoFile) : 0);
+            return Files.exists(videoFile) && Files.size(videoFile) > 0 ? Files.readAllBytes(videoFile) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException e) {
+            logger.error("Error writing screencast: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void encode() {
+        long slotMs = 1000L / fps;
+        try (MjpegAviWriter writer = new MjpegAviWriter(videoFile, fps)) {
+            long firstTimestamp = -1;
+            long writtenSlots = 0;
+            Frame pending = null;
+            byte[] lastWritten = null;
+
+            while (true) {
+                Frame frame = frames.take();
+                if (frame != END_OF_STREAM) {
+                    receivedFrames++;
+                    if (firstTimestamp < 0) {
+                        firstTimestamp = frame.timestampMs;
+                    }
+                }
+                long slot = frame == END_OF_STREAM
+                        ? Long.MAX_VALUE
+                        : (frame.timestampMs - firstTimestamp) / slotMs;
+
+                // A newer frame for a slot that is still open replaces the pending one (frame-rate cap)
+                if (pending != null && slot > writtenSlots) {
+                    if (lastWritten != null && Arrays.equals(pending.jpeg, lastWritten)) {
+                        writer.writeRepeatedFrame();
+                        skippedFrames++;
+                    } else {
+                        writer.writeFrame(pending.jpeg);
+                        lastWritten = pending.jpeg;
+                    }
+                    writtenSlots++;
+                    // No repaint in between: hold the last picture until this frame's slot
+                    long gap = frame == END_OF_STREAM ? 0 : slot - writtenSlots;
+                    for (long i = 0; i < gap; i++) {
+                        writer.writeRepeatedFrame();
+                    }
+                    writtenSlots += Math.max(0, gap);
+                    pending = null;
+                } else if (pending != null) {
+                    skippedFrames++;
+                }
+                if (frame == END_OF_STREAM) {
+                    break;
+                }
+                pending = frame;
+            }
+        } catch (IOException e) {
+            encoderError = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Frame {
+        private final byte[] jpeg;
+        private final long timestampMs;
+
+        Frame(byte[] jpeg, long timestampMs) {
+            this.jpeg = jpeg;
+            this.timestampMs = timestampMs;
+        }
+    }
+}
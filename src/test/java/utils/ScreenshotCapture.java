@@ -0,0 +1,384 @@
+package utils;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Screenshot capture for one scenario, in one of three modes:
+ * - full: the whole viewport (default)
+ * - element: only the elements under test, via WebElement.getScreenshotAs
+ * - region: a fixed x,y,width,height clip of the viewport
+ *
+ * The elements or region come from screenshot.elements / screenshot.region, or per
+ * scenario from tags, which take precedence:
+ *   &#64;capture-id:flash  &#64;capture-css:form#login  &#64;capture-region:0,0,800,400
+ *
+ * Only the raw capture runs on the scenario thread. Cropping and re-encoding to
+ * screenshot.format (png, jpeg or webp) at screenshot.quality happens on a shared
+ * background pool while the step runs, and the results are attached at the end of
+ * the step they were taken in, so they stay with that step in the report. With visual
+ * regression enabled, the decoded screenshots are also compared with their baselines
+ * there, before any lossy encoding, and diff images are attached after them. DevTools
+ * region captures in jpeg or webp are then taken a second time as PNG for the comparison,
+ * so the attachment keeps the requested format.
+ */
+public class ScreenshotCapture {
+    private static final Logger logger = LoggerFactory.getLogger(ScreenshotCapture.class);
+
+    private static final String TAG_ID = "@capture-id:";
+    private static final String TAG_CSS = "@capture-css:";
+    private static final String TAG_REGION = "@capture-region:";
+
+    // Looks elements up without waiting for the implicit wait when they are absent
+    private static final String FIND_ELEMENTS_SCRIPT =
+            "var found = [];"
+            + "arguments[0].forEach(function (s) {"
+            + "  document.querySelectorAll(s).forEach(function (e) { found.push(e); });"
+            + "});"
+            + "return found;";
+
+    private static final ExecutorService encoders = Executors.newFixedThreadPool(
+            Integer.parseInt(DriverManager.getConfig("screenshot.encoder.threads",
+                    String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)))),
+            runnable -> {
+                Thread thread = new Thread(runnable, "screenshot-encoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static volatile boolean webpWarningLogged;
+
+    private final String mode;
+    private final List<String> selectors;
+    private final Rectangle region;
+    private final String format;
+    private final float quality;
+    private final VisualRegression visual;
+    private final List<Future<List<Attachment>>> pending = new ArrayList<>();
+    private boolean devToolsUnavailable;
+    private long captureNanos;
+    private int captures;
+    private long imageBytes;
+
+    /**
+     * @param tags   the scenario's tags, see {@code Scenario.getSourceTagNames()}
+     * @param visual compares the screenshots with their baselines, may be null
+     */
+    public ScreenshotCapture(Collection<String> tags, VisualRegression visual) {
+        this.visual = visual;
+        List<String> tagSelectors = new ArrayList<>();
+        String tagRegion = null;
+        for (String tag : tags) {
+            if (tag.startsWith(TAG_ID)) {
+                tagSelectors.add("#" + tag.substring(TAG_ID.length()));
+            } else if (tag.startsWith(TAG_CSS)) {
+                tagSelectors.add(tag.substring(TAG_CSS.length()));
+            } else if (tag.startsWith(TAG_REGION)) {
+                tagRegion = tag.substring(TAG_REGION.length());
+            }
+        }
+
+        if (!tagSelectors.isEmpty()) {
+            mode = "element";
+            selectors = tagSelectors;
+        } else if (tagRegion != null) {
+            mode = "region";
+            selectors = Collections.emptyList();
+        } else {
+            mode = DriverManager.getConfig("screenshot.mode", "full").trim().toLowerCase();
+            selectors = Arrays.stream(DriverManager.getConfig("screenshot.elements", "").split(";"))
+                    .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+        }
+        region = "region".equals(mode)
+                ? parseRegion(tagRegion != null ? tagRegion : DriverManager.getConfig("screenshot.region", ""))
+                : null;
+
+        String configuredFormat = DriverManager.getConfig("screenshot.format", "png").trim().toLowerCase();
+        format = configuredFormat.equals("jpg") ? "jpeg" : configuredFormat;
+        quality = Integer.parseInt(DriverManager.getConfig("screenshot.quality", "75")) / 100f;
+    }
+
+    private static Rectangle parseRegion(String spec) {
+        String[] parts = spec.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Screenshot region must be x,y,width,height: " + spec);
+        }
+        int[] values = Arrays.stream(parts).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        return new Rectangle(values[0], values[1], values[3], values[2]);
+    }
+
+    /**
+     * Captures the current page according to the mode and queues it for encoding
+     *
+     * @param driver    the driver to capture
+     * @param name      attachment name
+     * @param visualKey baseline name of this capture within the scenario
+     * @param caption   HTML attached after the image(s), may be null
+     * @param viewportIfNoElements capture the viewport when none of the elements is on the page
+     * @return false if nothing was captured
+     */
+    public boolean capture(WebDriver driver, String name, String visualKey, String caption,
+                           boolean viewportIfNoElements) {
+        long start = System.nanoTime();
+        List<Future<List<Attachment>>> shots = new ArrayList<>();
+        if ("element".equals(mode) && !selectors.isEmpty()) {
+            List<WebElement> elements = findElements(driver);
+            for (int i = 0; i < elements.size(); i++) {
+                String suffix = elements.size() > 1 ? "_" + (i + 1) : "";
+                try {
+                    byte[] png = elements.get(i).getScreenshotAs(OutputType.BYTES);
+                    shots.add(encode(png, null, name + suffix, visualKey + suffix));
+                } catch (Exception e) {
+                    // The element went stale or has no size; the others are still useful
+                    logger.debug("Element screenshot failed: {}", e.getMessage());
+                }
+            }
+            if (shots.isEmpty() && viewportIfNoElements) {
+                shots.add(encode(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES), null, name, null));
+            }
+        } else if ("region".equals(mode)) {
+            Future<List<Attachment>> shot = captureRegionWithDevTools(name, visualKey);
+            shots.add(shot != null ? shot
+                    : encode(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES), region, name, visualKey));
+        } else {
+            shots.add(encode(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES), null, name, visualKey));
+        }
+        captureNanos += System.nanoTime() - start;
+
+        if (shots.isEmpty()) {
+            return false;
+        }
+        captures += shots.size();
+        pending.addAll(shots);
+        if (caption != null) {
+            pending.add(completed(new Attachment(caption.getBytes(), "text/html", name + "_details")));
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<WebElement> findElements(WebDriver driver) {
+        Object found = ((JavascriptExecutor) driver).executeScript(FIND_ELEMENTS_SCRIPT, selectors);
+        return found instanceof List ? (List<WebElement>) found : Collections.emptyList();
+    }
+
+    /**
+     * Lets Chromium clip and encode the region itself, which also gives real WebP output
+     *
+     * @return the shot, or null if the driver has no DevTools
+     */
+    private Future<List<Attachment>> captureRegionWithDevTools(String name, String visualKey) {
+        WebDriver rawDriver = DriverManager.getRawDriver();
+        if (devToolsUnavailable || !(rawDriver instanceof HasDevTools)) {
+            return null;
+        }
+        try {
+            DevTools devTools = ((HasDevTools) rawDriver).getDevTools();
+            devTools.createSessionIfThereIsNotOne();
+            byte[] image = captureRegion(devTools, format);
+            if (visual == null || visualKey == null) {
+                return completed(new Attachment(image, "image/" + format, name));
+            }
+            if ("png".equals(format)) {
+                return encode(image, null, name, visualKey);
+            }
+            // Visual comparison needs lossless pixels, so the region is captured once more as PNG;
+            // the attachment keeps the requested format
+            byte[] png = captureRegion(devTools, "png");
+            return encoders.submit(() -> {
+                List<Attachment> attachments = new ArrayList<>();
+                attachments.add(new Attachment(image, "image/" + format, name));
+                addVisualDiff(attachments, ImageIO.read(new ByteArrayInputStream(png)), name, visualKey);
+                return attachments;
+            });
+        } catch (Exception e) {
+            devToolsUnavailable = true;
+            logger.debug("DevTools region capture unavailable, cropping viewport screenshots: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] captureRegion(DevTools devTools, String captureFormat) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("format", captureFormat);
+        params.put("clip", Map.of("x", region.getX(), "y", region.getY(),
+                                  "width", region.getWidth(), "height", region.getHeight(), "scale", 1));
+        if (!"png".equals(captureFormat)) {
+            params.put("quality", Math.round(quality * 100));
+        }
+        Map<String, Object> result = devTools.send(new Command<>("Page.captureScreenshot", params,
+                input -> input.<Map<String, Object>>read(Json.MAP_TYPE)));
+        return Base64.getDecoder().decode((String) result.get("data"));
+    }
+
+    private Future<List<Attachment>> encode(byte[] png, Rectangle crop, String name, String visualKey) {
+        String outputFormat = format;
+        if ("webp".equals(outputFormat)) {
+            // The JDK has no WebP encoder
+            if (!webpWarningLogged) {
+                webpWarningLogged = true;
+                logger.warn("WebP screenshots need DevTools region capture, writing JPEG instead");
+            }
+            outputFormat = "jpeg";
+        }
+        boolean compare = visual != null && visualKey != null;
+        if ("png".equals(outputFormat) && crop == null && !compare) {
+            return completed(new Attachment(png, "image/png", name));
+        }
+        String targetFormat = outputFormat;
+        return encoders.submit(() -> process(png, crop, targetFormat, name, compare ? visualKey : null));
+    }
+
+    private List<Attachment> process(byte[] png, Rectangle crop, String targetFormat, String name,
+                                     String visualKey) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (crop != null) {
+            int x = Math.min(crop.getX(), image.getWidth() - 1);
+            int y = Math.min(crop.getY(), image.getHeight() - 1);
+            image = image.getSubimage(x, y,
+                    Math.min(crop.getWidth(), image.getWidth() - x),
+                    Math.min(crop.getHeight(), image.getHeight() - y));
+        }
+        List<Attachment> attachments = new ArrayList<>();
+        attachments.add(new Attachment(crop == null && "png".equals(targetFormat) ? png : transcode(image, targetFormat),
+                                       "image/" + targetFormat, name));
+        if (visualKey != null) {
+            addVisualDiff(attachments, image, name, visualKey);
+        }
+        return attachments;
+    }
+
+    private void addVisualDiff(List<Attachment> attachments, BufferedImage image, String name, String visualKey)
+            throws IOException {
+        byte[] diff = visual.check(image, visualKey);
+        if (diff != null) {
+            attachments.add(new Attachment(diff, "image/png", "visual_diff_" + name));
+        }
+    }
+
+    private byte[] transcode(BufferedImage image, String targetFormat) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if ("png".equals(targetFormat)) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+
+        // JPEG has no alpha channel
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Queues an attachment that needs no encoding, e.g. the HTML stand-in for a screenshot,
+     * so that it is attached in order with the screenshots around it
+     */
+    public void add(byte[] data, String mediaType, String name) {
+        pending.add(completed(new Attachment(data, mediaType, name)));
+    }
+
+    private static Future<List<Attachment>> completed(Attachment attachment) {
+        return CompletableFuture.completedFuture(Collections.singletonList(attachment));
+    }
+
+    /**
+     * Waits for the queued screenshots and hands them to the attach callback in capture order.
+     * Called at the end of every step, so only that step's encoding is waited for.
+     */
+    public void attachAll(Attacher attacher) {
+        try {
+            for (Future<List<Attachment>> shot : pending) {
+                try {
+                    for (Attachment attachment : shot.get()) {
+                        if (attachment.mediaType.startsWith("image/")) {
+                            imageBytes += attachment.data.length;
+                        }
+                        attacher.attach(attachment.data, attachment.mediaType, attachment.name);
+                    }
+                } catch (ExecutionException e) {
+                    logger.error("Error encoding screenshot: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Logs how many screenshots the scenario took and what they cost
+     */
+    public void logSummary() {
+        if (captures > 0) {
+            logger.info("Screenshots ({} mode, {}): {} captured, {} KB, {} ms average capture",
+                        mode, format, captures, imageBytes / 1024, captureNanos / captures / 1_000_000);
+        }
+    }
+
+    /**
+     * Receives finished screenshots, e.g. {@code scenario::attach}
+     */
+    public interface Attacher {
+        void attach(byte[] data, String mediaType, String name);
+    }
+
+    private static class Attachment {
+        private final byte[] data;
+        private final String mediaType;
+        private final String name;
+
+        Attachment(byte[] data, String mediaType, String name) {
+            this.data = data;
+            this.mediaType = mediaType;
+            this.name = name;
+        }
+    }
+}
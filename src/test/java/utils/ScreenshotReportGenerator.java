@@ -7,6 +7,8 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -24,6 +26,7 @@ import java.util.List;
  * Uses PDFBox directly to create PDF reports with embedded screenshots
  */
 public class ScreenshotReportGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(ScreenshotReportGenerator.class);
 
     // Font constants
     private static final PDFont TITLE_FONT = PDType1Font.HELVETICA_BOLD;
@@ -36,7 +39,7 @@ public class ScreenshotReportGenerator {
     
     // Main method for standalone execution
     public static void main(String[] args) {
-        System.out.println("\n\n==== GENERATING SCREENSHOT PDF REPORT ====\n");
+        logger.info("\n\n==== GENERATING SCREENSHOT PDF REPORT ====\n");
         
         try {
             // Create timestamp for unique file name
@@ -51,21 +54,20 @@ public class ScreenshotReportGenerator {
             List<File> screenshotFiles = findScreenshots();
             
             if (screenshotFiles.isEmpty()) {
-                System.out.println("No screenshots found to include in the report.");
+                logger.info("No screenshots found to include in the report.");
             } else {
-                System.out.println("Found " + screenshotFiles.size() + " screenshots to include in the report.");
+                logger.info("Found {} screenshots to include in the report.", screenshotFiles.size());
                 
                 // Create the PDF report
                 createPdfReport(pdfPath, screenshotFiles);
                 
-                System.out.println("PDF Report with Screenshots generated at: " + new File(pdfPath).getAbsolutePath());
+                logger.info("PDF Report with Screenshots generated at: {}", new File(pdfPath).getAbsolutePath());
             }
             
-            System.out.println("\n==== REPORT GENERATION COMPLETE ====\n");
+            logger.info("\n==== REPORT GENERATION COMPLETE ====\n");
             
         } catch (Exception e) {
-            System.err.println("Error generating PDF report: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error generating PDF report: {}", e.getMessage(), e);
         }
     }
     
@@ -87,7 +89,7 @@ public class ScreenshotReportGenerator {
                     // Add a page for this screenshot
                     addImagePage(document, imageFile, i + 1);
                 } catch (Exception e) {
-                    System.err.println("Error adding image to PDF: " + e.getMessage());
+                    logger.error("Error adding image to PDF: {}", e.getMessage());
                 }
             }
             
@@ -225,7 +227,7 @@ public class ScreenshotReportGenerator {
                     
                     if (files != null) {
                         screenshots.addAll(Arrays.asList(files));
-                        System.out.println("Found images in: " + base64Dir.getAbsolutePath());
+                        logger.info("Found images in: {}", base64Dir.getAbsolutePath());
                     }
                 }
             }
@@ -240,7 +242,7 @@ public class ScreenshotReportGenerator {
                     
                     if (files != null) {
                         screenshots.addAll(Arrays.asList(files));
-                        System.out.println("Found images in: " + directScreenshots.getAbsolutePath());
+                        logger.info("Found images in: {}", directScreenshots.getAbsolutePath());
                     }
                 }
             }
@@ -257,7 +259,7 @@ public class ScreenshotReportGenerator {
                             
                             if (files != null && files.length > 0) {
                                 screenshots.addAll(Arrays.asList(files));
-                                System.out.println("Found images in: " + dir.getAbsolutePath());
+                                logger.info("Found images in: {}", dir.getAbsolutePath());
                                 break;
                             }
                         }
@@ -266,7 +268,7 @@ public class ScreenshotReportGenerator {
             }
             
         } catch (Exception e) {
-            System.err.println("Error finding screenshots: " + e.getMessage());
+            logger.error("Error finding screenshots: {}", e.getMessage());
         }
         
         return screenshots;
@@ -0,0 +1,91 @@
+package utils;
+
+import com.gargoylesoftware.htmlunit.Cache;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import net.sourceforge.htmlunit.corejs.javascript.Script;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide HtmlUnit cache shared by every HtmlUnitDriver created in the JVM.
+ * HtmlUnit's own cache already evicts the least recently accessed entry once it is
+ * full; this class bounds it by configuration, optionally keeps compiled scripts,
+ * and counts hits and misses so the benefit can be seen in the test output.
+ *
+ * Configured through driver.properties or system properties:
+ * htmlunit.cache.shared, htmlunit.cache.maxSize and htmlunit.cache.scripts.
+ */
+public class SharedHtmlUnitCache extends Cache {
+    private static final long serialVersionUID = 1L;
+
+    private static final SharedHtmlUnitCache INSTANCE = new SharedHtmlUnitCache();
+
+    private final boolean cacheScripts;
+    private final AtomicLong responseHits = new AtomicLong();
+    private final AtomicLong responseMisses = new AtomicLong();
+    private final AtomicLong scriptHits = new AtomicLong();
+    private final AtomicLong scriptMisses = new AtomicLong();
+
+    private SharedHtmlUnitCache() {
+        setMaxSize(Integer.parseInt(DriverManager.getConfig("htmlunit.cache.maxSize", "500")));
+        cacheScripts = Boolean.parseBoolean(DriverManager.getConfig("htmlunit.cache.scripts", "false"));
+    }
+
+    public static SharedHtmlUnitCache getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean cacheIfPossible(WebRequest request, WebResponse response, Object toCache) {
+        // Compiled scripts are only kept when explicitly enabled; the response itself is always cached
+        Object cached = (toCache instanceof Script && !cacheScripts) ? null : toCache;
+        return super.cacheIfPossible(request, response, cached);
+    }
+
+    @Override
+    public WebResponse getCachedResponse(WebRequest request) {
+        WebResponse response = super.getCachedResponse(request);
+        (response != null ? responseHits : responseMisses).incrementAndGet();
+        return response;
+    }
+
+    @Override
+    public Object getCachedObject(WebRequest request) {
+        Object cached = super.getCachedObject(request);
+        (cached != null ? scriptHits : scriptMisses).incrementAndGet();
+        return cached;
+    }
+
+    /**
+     * WebClient.close() clears its cache; the shared cache must survive individual
+     * drivers quitting, so clearing is only done through {@link #clearAll()}.
+     */
+    @Override
+    public void clear() {
+        // Intentionally ignored, see clearAll()
+    }
+
+    /**
+     * Empties the shared cache and resets the statistics.
+     */
+    public void clearAll() {
+        super.clear();
+        responseHits.set(0);
+        responseMisses.set(0);
+        scriptHits.set(0);
+        scriptMisses.set(0);
+    }
+
+    /**
+     * Summary of the cache usage, e.g. for logging at the end of a run
+     *
+     * @return human readable hit/miss statistics
+     */
+    public String getStats() {
+        return "entries=" + getSize() + "/" + getMaxSize()
+                + ", responses: " + responseHits.get() + " hits / " + responseMisses.get() + " misses"
+                + ", cached objects: " + scriptHits.get() + " hits / " + scriptMisses.get() + " misses"
+                + " (script caching " + (cacheScripts ? "on" : "off") + ")";
+    }
+}
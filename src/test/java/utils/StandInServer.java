@@ -0,0 +1,237 @@
+package utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for The Internet demo site, serving just the pages the navigation
+ * scenarios use: the home page with the Form Authentication link, the login form,
+ * and the secure area shown after a successful login.
+ *
+ * Useful for load runs and offline runs, where hammering the public site is not an
+ * option. Point the steps at it with base.url=http://127.0.0.1:&lt;port&gt;/.
+ * An optional standin.latency.ms adds a fixed server-side delay to every response.
+ * Virtual users rarely log out, so sessions not seen for standin.session.idle.s
+ * (default 300) are dropped, keeping long load runs at a bounded number of sessions.
+ */
+public class StandInServer {
+    private static final Logger logger = LoggerFactory.getLogger(StandInServer.class);
+
+    private static final String USERNAME = "tomsmith";
+    private static final String PASSWORD = "SuperSecretPassword!";
+    private static final String SESSION_COOKIE = "rack.session";
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final long latencyMs;
+    private final long sessionIdleMs;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong nextSweepAt = new AtomicLong();
+
+    private StandInServer(int port, long latencyMs) throws IOException {
+        this.latencyMs = latencyMs;
+        this.sessionIdleMs = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(DriverManager.getConfig("standin.session.idle.s", "300")));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(workers);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts a stand-in server on the given port (0 picks a free port)
+     */
+    public static StandInServer start(int port) throws IOException {
+        StandInServer standIn = new StandInServer(port,
+                Long.parseLong(DriverManager.getConfig("standin.latency.ms", "0")));
+        standIn.server.start();
+        logger.info("Stand-in server listening on {}", standIn.getBaseUrl());
+        return standIn;
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            Session session = sessionOf(exchange);
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+
+            if ("/".equals(path)) {
+                send(exchange, 200, page("The Internet", "<h1 class=\"heading\">Welcome to the-internet</h1>"
+                        + "<h2>Available Examples</h2><ul>"
+                        + "<li><a href=\"/login\">Form Authentication</a></li>"
+                        + "</ul>"));
+            } else if ("/login".equals(path)) {
+                send(exchange, 200, page("The Internet", flash(session)
+                        + "<h2>Login Page</h2>"
+                        + "<form name=\"login\" id=\"login\" action=\"/authenticate\" method=\"post\">"
+                        + "<input type=\"text\" name=\"username\" id=\"username\">"
+                        + "<input type=\"password\" name=\"password\" id=\"password\">"
+                        + "<button class=\"radius\" type=\"submit\">Login</button>"
+                        + "</form>"));
+            } else if ("/authenticate".equals(path) && "POST".equals(method)) {
+                Map<String, String> form = parseForm(new String(
+                        exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                if (!USERNAME.equals(form.get("username"))) {
+                    session.flash = "error|Your username is invalid!";
+                    redirect(exchange, "/login");
+                } else if (!PASSWORD.equals(form.get("password"))) {
+                    session.flash = "error|Your password is invalid!";
+                    redirect(exchange, "/login");
+                } else {
+                    session.loggedIn = true;
+                    session.flash = "success|You logged into a secure area!";
+                    redirect(exchange, "/secure");
+                }
+            } else if ("/secure".equals(path)) {
+                if (session.loggedIn) {
+                    send(exchange, 200, page("The Internet", flash(session)
+                            + "<h2>Secure Area</h2>"
+                            + "<a class=\"button secondary radius\" href=\"/logout\">Logout</a>"));
+                } else {
+                    session.flash = "error|You must login to view the secure area!";
+                    redirect(exchange, "/login");
+                }
+            } else if ("/logout".equals(path)) {
+                session.loggedIn = false;
+                session.flash = "success|You logged out of the secure area!";
+                redirect(exchange, "/login");
+            } else {
+                send(exchange, 404, page("Not Found", "<h1>Not Found</h1>"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the session of the request, issuing a new session cookie if it has none
+     * or its session has expired
+     */
+    private Session sessionOf(HttpExchange exchange) {
+        long now = System.currentTimeMillis();
+        sweepIdleSessions(now);
+        String cookies = exchange.getRequestHeaders().getFirst("Cookie");
+        if (cookies != null) {
+            for (String cookie : cookies.split(";")) {
+                String[] parts = cookie.trim().split("=", 2);
+                if (parts.length == 2 && SESSION_COOKIE.equals(parts[0])) {
+                    Session session = sessions.get(parts[1]);
+                    if (session != null) {
+                        session.lastSeen = now;
+                        return session;
+                    }
+                }
+            }
+        }
+        String id = UUID.randomUUID().toString();
+        Session session = new Session(now);
+        sessions.put(id, session);
+        exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + id + "; Path=/; HttpOnly");
+        return session;
+    }
+
+    /**
+     * Drops sessions that have been idle for too long; runs at most once per idle period
+     */
+    private void sweepIdleSessions(long now) {
+        long sweepAt = nextSweepAt.get();
+        if (now >= sweepAt && nextSweepAt.compareAndSet(sweepAt, now + sessionIdleMs)) {
+            sessions.values().removeIf(session -> now - session.lastSeen > sessionIdleMs);
+        }
+    }
+
+    private static String flash(Session session) {
+        String flash = session.flash;
+        session.flash = null;
+        if (flash == null) {
+            return "";
+        }
+        String[] parts = flash.split("\\|", 2);
+        return "<div id=\"flash\" class=\"flash " + parts[0] + "\">" + parts[1] + "</div>";
+    }
+
+    private static String page(String title, String body) {
+        return "<!DOCTYPE html><html><head><title>" + title + "</title></head>"
+               + "<body><div id=\"content\">" + body + "</div></body></html>";
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            String[] parts = pair.split("=", 2);
+            if (parts.length == 2) {
+                form.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                         URLDecoder.decode(parts[1], StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        exchange.sendResponseHeaders(303, -1);
+    }
+
+    private static void send(HttpExchange exchange, int status, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Login state and pending flash message of one browser session
+     */
+    private static class Session {
+        private volatile boolean loggedIn;
+        private volatile String flash;
+        private volatile long lastSeen;
+
+        Session(long now) {
+            this.lastSeen = now;
+        }
+    }
+}
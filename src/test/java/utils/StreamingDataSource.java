@@ -0,0 +1,187 @@
+package utils;
+
+import org.openqa.selenium.json.Json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Streams the rows of a CSV or JSONL data file for data-driven scenarios.
+ *
+ * Rows are read lazily, one line at a time, so a file with tens of thousands of rows
+ * never has to be in memory or expanded into Gherkin examples. A file is split into
+ * partitions by row number (row % partitions), which lets one Scenario Outline example
+ * per partition run on its own scenario thread while every worker reads the same file.
+ *
+ * CSV files start with a header row and may quote fields ("a, b" and "say ""hi"""),
+ * but a quoted field cannot span lines. JSONL files hold one JSON object per line.
+ * Blank lines and lines starting with # are skipped in both.
+ */
+public class StreamingDataSource {
+
+    private StreamingDataSource() {
+        // Utility class
+    }
+
+    /**
+     * One row of a data file
+     */
+    public static class Row {
+        private final long number;
+        private final Map<String, String> values;
+
+        Row(long number, Map<String, String> values) {
+            this.number = number;
+            this.values = values;
+        }
+
+        /**
+         * @return the row's position among the data rows, starting at 1
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        public String get(String column) {
+            String value = values.get(column);
+            if (value == null && !values.containsKey(column)) {
+                throw new IllegalArgumentException("Row " + number + " has no column '" + column + "'");
+            }
+            return value;
+        }
+
+        public Map<String, String> getValues() {
+            return Collections.unmodifiableMap(values);
+        }
+    }
+
+    /**
+     * Streams the rows of one partition; close the stream to close the file
+     *
+     * @param location   a file path, or a classpath resource such as data/credentials.csv
+     * @param partition  which partition to read, from 0 to partitions - 1
+     * @param partitions how many partitions the file is split into
+     */
+    public static Stream<Row> rows(String location, int partition, int partitions) {
+        if (partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException("Partition " + partition + " is not within 0.." + (partitions - 1));
+        }
+        boolean jsonl = location.endsWith(".jsonl") || location.endsWith(".ndjson");
+        Stream<String> lines = openLines(location)
+                .filter(line -> !line.trim().isEmpty() && !line.startsWith("#"));
+
+        if (jsonl) {
+            AtomicLong number = new AtomicLong();
+            return lines.map(line -> new Line(number.incrementAndGet(), line))
+                    .filter(line -> (line.number - 1) % partitions == partition)
+                    .map(line -> new Row(line.number, parseJsonLine(line.text)));
+        }
+
+        // The header is the first line; the column names are read from it once
+        List<String> header = new ArrayList<>();
+        AtomicLong number = new AtomicLong(-1);
+        return lines.map(line -> new Line(number.incrementAndGet(), line))
+                .filter(line -> {
+                    if (line.number == 0) {
+                        header.addAll(parseCsvLine(line.text));
+                        return false;
+                    }
+                    return (line.number - 1) % partitions == partition;
+                })
+                .map(line -> new Row(line.number, toMap(header, parseCsvLine(line.text), line.number)));
+    }
+
+    private static Stream<String> openLines(String location) {
+        try {
+            Path path = Paths.get(location);
+            if (Files.isRegularFile(path)) {
+                return Files.lines(path, StandardCharsets.UTF_8);
+            }
+            InputStream resource = StreamingDataSource.class.getClassLoader().getResourceAsStream(location);
+            if (resource == null) {
+                throw new IllegalArgumentException("Data file not found on disk or classpath: " + location);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8));
+            return reader.lines().onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening data file " + location, e);
+        }
+    }
+
+    private static Map<String, String> toMap(List<String> header, List<String> fields, long number) {
+        if (fields.size() != header.size()) {
+            throw new IllegalArgumentException("Row " + number + " has " + fields.size()
+                                               + " field(s), the header has " + header.size());
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            values.put(header.get(i), fields.get(i));
+        }
+        return values;
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static Map<String, String> parseJsonLine(String line) {
+        Map<String, Object> object = new Json().toType(line, Json.MAP_TYPE);
+        Map<String, String> values = new LinkedHashMap<>();
+        object.forEach((key, value) -> values.put(key, value == null ? null : String.valueOf(value)));
+        return values;
+    }
+
+    private static class Line {
+        private final long number;
+        private final String text;
+
+        Line(long number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+    }
+}
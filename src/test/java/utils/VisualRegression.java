@@ -0,0 +1,365 @@
+package utils;
+
+import org.openqa.selenium.Rectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Visual regression checks of step screenshots against approved baseline images.
+ *
+ * Baselines live in visual.baseline.dir/&lt;browser&gt;/&lt;scenario&gt;/&lt;step&gt;.png. A
+ * screenshot is compared tile by tile (visual.tile.size pixels square) in parallel on
+ * the pixels' int[] rasters: identical rows are skipped with a vectorised mismatch
+ * search, and once one tile has more than visual.tile.maxDiffRatio differing pixels
+ * the remaining tiles are not compared at all. A pixel differs when one of its
+ * channels is more than visual.tolerance apart; areas in visual.ignore or in
+ * &#64;visual-ignore:x,y,w,h scenario tags are never compared. Decoded baselines are
+ * kept in memory (visual.cache.maxMB) so reruns and repeated steps skip the PNG decode.
+ *
+ * Missing baselines are recorded from the current run (visual.baseline.update=missing),
+ * re-recorded for every screenshot (all) or reported as differences (none). For a
+ * difference, the diff image is returned for the report and written with the actual
+ * screenshot to target/visual-diffs, from where it can be copied over the baseline.
+ */
+public class VisualRegression {
+    private static final Logger logger = LoggerFactory.getLogger(VisualRegression.class);
+
+    private static final String TAG_IGNORE = "@visual-ignore:";
+    private static final String DIFF_DIR = "target/visual-diffs/";
+
+    private static final ForkJoinPool tilePool = new ForkJoinPool(
+            Integer.parseInt(DriverManager.getConfig("visual.threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors()))));
+
+    // Decoded baselines, least recently used first, bounded by visual.cache.maxMB
+    private static final Map<String, int[]> baselineCache = new LinkedHashMap<>(16, 0.75f, true);
+    private static final long cacheMaxPixels =
+            Long.parseLong(DriverManager.getConfig("visual.cache.maxMB", "256")) * 1024 * 1024 / 4;
+    private static long cachedPixels;
+
+    private final Path baselineDir;
+    private final String update;
+    private final int tolerance;
+    private final int tileSize;
+    private final double tileMaxDiffRatio;
+    private final double maxDiffRatio;
+    private final List<Rectangle> ignoreRegions = new ArrayList<>();
+    private final AtomicInteger compared = new AtomicInteger();
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final List<String> differences = new ArrayList<>();
+
+    /**
+     * @param scenarioKey stable name of the scenario, used as the baseline folder
+     * @param tags        the scenario's tags, for &#64;visual-ignore regions
+     */
+    public VisualRegression(String scenarioKey, Collection<String> tags) {
+        this.baselineDir = Paths.get(DriverManager.getConfig("visual.baseline.dir", "visual-baselines"),
+                                     DriverManager.getBrowserType(), scenarioKey);
+        this.update = DriverManager.getConfig("visual.baseline.update", "missing").trim().toLowerCase();
+        this.tolerance = Integer.parseInt(DriverManager.getConfig("visual.tolerance", "8"));
+        this.tileSize = Integer.parseInt(DriverManager.getConfig("visual.tile.size", "64"));
+        this.tileMaxDiffRatio = Double.parseDouble(DriverManager.getConfig("visual.tile.maxDiffRatio", "0.05"));
+        this.maxDiffRatio = Double.parseDouble(DriverManager.getConfig("visual.maxDiffRatio", "0.001"));
+
+        for (String region : DriverManager.getConfig("visual.ignore", "").split(";")) {
+            if (!region.trim().isEmpty()) {
+                ignoreRegions.add(parseRegion(region));
+            }
+        }
+        for (String tag : tags) {
+            if (tag.startsWith(TAG_IGNORE)) {
+                ignoreRegions.add(parseRegion(tag.substring(TAG_IGNORE.length())));
+            }
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(DriverManager.getConfig("visual.enabled", "false"));
+    }
+
+    public static boolean isFailOnDiff() {
+        return Boolean.parseBoolean(DriverManager.getConfig("visual.failOnDiff", "false"));
+    }
+
+    private static Rectangle parseRegion(String spec) {
+        int[] values = Arrays.stream(spec.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        if (values.length != 4) {
+            throw new IllegalArgumentException("Visual ignore region must be x,y,width,height: " + spec);
+        }
+        return new Rectangle(values[0], values[1], values[3], values[2]);
+    }
+
+    /**
+     * Compares a screenshot with its baseline, recording the baseline if needed
+     *
+     * @param actual the decoded screenshot
+     * @param step   baseline file name within the scenario, without extension
+     * @return the diff image as PNG, or null if the screenshot matches
+     */
+    public byte[] check(BufferedImage actual, String step) throws IOException {
+        Path baselineFile = baselineDir.resolve(step + ".png");
+        boolean exists = Files.exists(baselineFile);
+        if ("all".equals(update) || (!exists && "missing".equals(update))) {
+            Files.createDirectories(baselineDir);
+            ImageIO.write(actual, "png", baselineFile.toFile());
+            recorded.incrementAndGet();
+            return null;
+        }
+        compared.incrementAndGet();
+        if (!exists) {
+            recordDifference(step + ": no baseline at " + baselineFile);
+            return null;
+        }
+
+        int width = actual.getWidth();
+        int height = actual.getHeight();
+        int[] baselinePixels = loadBaseline(baselineFile, width, height);
+        if (baselinePixels == null) {
+            writeDiffFiles(step, actual, null);
+            return null;
+        }
+
+        int[] actualPixels = toIntRgb(actual);
+        boolean[] ignored = applyIgnoredRegions(actualPixels, baselinePixels, width, height);
+
+        Comparison comparison = compare(actualPixels, baselinePixels, width, height, true);
+        if (!comparison.significant && comparison.differingPixels <= maxDiffRatio * width * height) {
+            return null;
+        }
+
+        // Only failures pay for a full pass over every tile to draw the diff image
+        comparison = compare(actualPixels, baselinePixels, width, height, false);
+        recordDifference(String.format("%s: %d differing pixel(s) (%.3f%%) in %d tile(s)", step,
+                                       comparison.differingPixels, 100.0 * comparison.differingPixels / (width * height),
+                                       comparison.differingTiles));
+        BufferedImage diff = drawDiff(actualPixels, baselinePixels, comparison.mask, ignored, width, height);
+        writeDiffFiles(step, actual, diff);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(diff, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a baseline as an int[] RGB raster, from the cache when it has not changed on disk
+     *
+     * @return the raster, or null (recorded as a difference) if its size differs from the screenshot
+     */
+    private int[] loadBaseline(Path baselineFile, int width, int height) throws IOException {
+        String key = baselineFile.toAbsolutePath() + "@" + Files.getLastModifiedTime(baselineFile).toMillis();
+        int[] pixels;
+        synchronized (baselineCache) {
+            pixels = baselineCache.get(key);
+        }
+        if (pixels == null) {
+            BufferedImage baselineImage = ImageIO.read(baselineFile.toFile());
+            if (baselineImage.getWidth() != width || baselineImage.getHeight() != height) {
+                recordDifference(String.format("%s: size %dx%d, baseline %dx%d", baselineFile.getFileName(),
+                                               width, height, baselineImage.getWidth(), baselineImage.getHeight()));
+                return null;
+            }
+            pixels = toIntRgb(baselineImage);
+            synchronized (baselineCache) {
+                if (baselineCache.put(key, pixels) == null) {
+                    cachedPixels += pixels.length;
+                }
+                Iterator<int[]> eldest = baselineCache.values().iterator();
+                while (cachedPixels > cacheMaxPixels && eldest.hasNext()) {
+                    cachedPixels -= eldest.next().length;
+                    eldest.remove();
+                }
+            }
+        }
+        if (pixels.length != width * height) {
+            recordDifference(String.format("%s: size %dx%d differs from the baseline", baselineFile.getFileName(),
+                                           width, height));
+            return null;
+        }
+        return pixels;
+    }
+
+    /**
+     * Compares all tiles in parallel
+     *
+     * @param earlyExit stop at the first tile over visual.tile.maxDiffRatio and do not build a mask
+     */
+    private Comparison compare(int[] actual, int[] baseline, int width, int height, boolean earlyExit) {
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        Comparison comparison = new Comparison(earlyExit ? null : new boolean[actual.length]);
+        AtomicBoolean significant = new AtomicBoolean();
+        AtomicInteger differingPixels = new AtomicInteger();
+        AtomicInteger differingTiles = new AtomicInteger();
+
+        tilePool.submit(() -> IntStream.range(0, tilesX * tilesY).parallel().forEach(tile -> {
+            if (earlyExit && significant.get()) {
+                return;
+            }
+            int x0 = (tile % tilesX) * tileSize;
+            int y0 = (tile / tilesX) * tileSize;
+            int x1 = Math.min(x0 + tileSize, width);
+            int y1 = Math.min(y0 + tileSize, height);
+            int count = compareTile(actual, baseline, width, x0, y0, x1, y1, comparison.mask);
+            if (count > 0) {
+                differingPixels.addAndGet(count);
+                differingTiles.incrementAndGet();
+                if (count > tileMaxDiffRatio * (x1 - x0) * (y1 - y0)) {
+                    significant.set(true);
+                }
+            }
+        })).join();
+
+        comparison.significant = significant.get();
+        comparison.differingPixels = differingPixels.get();
+        comparison.differingTiles = differingTiles.get();
+        return comparison;
+    }
+
+    private int compareTile(int[] actual, int[] baseline, int width,
+                            int x0, int y0, int x1, int y1, boolean[] mask) {
+        int count = 0;
+        for (int y = y0; y < y1; y++) {
+            int rowStart = y * width + x0;
+            int rowEnd = y * width + x1;
+            int i = rowStart;
+            while (i < rowEnd) {
+                int mismatch = Arrays.mismatch(actual, i, rowEnd, baseline, i, rowEnd);
+                if (mismatch < 0) {
+                    break;
+                }
+                i += mismatch;
+                int a = actual[i];
+                int b = baseline[i];
+                if (Math.abs(((a >> 16) & 0xff) - ((b >> 16) & 0xff)) > tolerance
+                        || Math.abs(((a >> 8) & 0xff) - ((b >> 8) & 0xff)) > tolerance
+                        || Math.abs((a & 0xff) - (b & 0xff)) > tolerance) {
+                    count++;
+                    if (mask != null) {
+                        mask[i] = true;
+                    }
+                }
+                i++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies the baseline into the ignored areas of the screenshot so they always match.
+     * The baseline raster is shared through the cache and never modified.
+     *
+     * @return which pixels are ignored, for the diff image, or null if there are no ignore regions
+     */
+    private boolean[] applyIgnoredRegions(int[] actual, int[] baseline, int width, int height) {
+        if (ignoreRegions.isEmpty()) {
+            return null;
+        }
+        boolean[] ignored = new boolean[actual.length];
+        for (Rectangle region : ignoreRegions) {
+            int x0 = Math.max(0, region.getX());
+            int x1 = Math.min(width, region.getX() + region.getWidth());
+            int y1 = Math.min(height, region.getY() + region.getHeight());
+            if (x1 <= x0) {
+                continue;
+            }
+            for (int y = Math.max(0, region.getY()); y < y1; y++) {
+                System.arraycopy(baseline, y * width + x0, actual, y * width + x0, x1 - x0);
+                Arrays.fill(ignored, y * width + x0, y * width + x1, true);
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Faded baseline with differing pixels in red and ignored areas in blue
+     */
+    private static BufferedImage drawDiff(int[] actual, int[] baseline, boolean[] mask, boolean[] ignored,
+                                          int width, int height) {
+        BufferedImage diff = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) diff.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            if (mask[i]) {
+                pixels[i] = 0xff0000;
+            } else if (ignored != null && ignored[i]) {
+                pixels[i] = 0x9fc5e8;
+            } else {
+                int b = baseline[i];
+                int gray = (((b >> 16) & 0xff) + ((b >> 8) & 0xff) + (b & 0xff)) / 3;
+                int faded = 192 + gray / 4;
+                pixels[i] = (faded << 16) | (faded << 8) | faded;
+            }
+        }
+        return diff;
+    }
+
+    private static int[] toIntRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            // Copy: ignored regions are overwritten in place
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData().clone();
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData();
+    }
+
+    private void writeDiffFiles(String step, BufferedImage actual, BufferedImage diff) {
+        try {
+            Path dir = Paths.get(DIFF_DIR).resolve(baselineDir.getParent().getFileName())
+                    .resolve(baselineDir.getFileName());
+            Files.createDirectories(dir);
+            ImageIO.write(actual, "png", dir.resolve(step + "-actual.png").toFile());
+            if (diff != null) {
+                ImageIO.write(diff, "png", dir.resolve(step + "-diff.png").toFile());
+            }
+        } catch (IOException e) {
+            logger.error("Error writing visual diff files: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void recordDifference(String difference) {
+        differences.add(difference);
+        logger.warn("Visual difference: {}", difference);
+    }
+
+    public synchronized List<String> getDifferences() {
+        return new ArrayList<>(differences);
+    }
+
+    public String getSummary() {
+        return String.format("%d compared, %d baseline(s) recorded, %d difference(s)",
+                             compared.get(), recorded.get(), getDifferences().size());
+    }
+
+    private static class Comparison {
+        private final boolean[] mask;
+        private boolean significant;
+        private int differingPixels;
+        private int differingTiles;
+
+        Comparison(boolean[] mask) {
+            this.mask = mask;
+        }
+    }
+}
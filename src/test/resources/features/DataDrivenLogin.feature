@@ -0,0 +1,17 @@
+Feature: Data-driven login with credentials from an external file
+
+  # Rows are streamed from the data file instead of being listed as examples here.
+  # Each example runs one partition of the file; with --threads (or
+  # cucumber.execution.parallel.enabled) the partitions run in parallel.
+  @data-driven
+  Scenario Outline: Log in with every credential row of partition <partition>
+    Given the data set "data/credentials.csv" split into 4 partitions
+    When I try to log in with every row of partition <partition>
+    Then every row should have had its expected outcome
+
+    Examples:
+      | partition |
+      | 0         |
+      | 1         |
+      | 2         |
+      | 3         |